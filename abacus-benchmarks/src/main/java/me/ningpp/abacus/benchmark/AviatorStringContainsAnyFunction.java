@@ -0,0 +1,46 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus.benchmark;
+
+import com.googlecode.aviator.runtime.function.AbstractVariadicFunction;
+import com.googlecode.aviator.runtime.type.AviatorBoolean;
+import com.googlecode.aviator.runtime.type.AviatorObject;
+import me.ningpp.abacus.methods.StringContainsAnyMethod;
+
+import java.util.Map;
+
+/**
+ * {@link StringContainsAnyMethod} for Aviator, so it can run the performance formula.
+ */
+class AviatorStringContainsAnyFunction extends AbstractVariadicFunction {
+
+    private static final StringContainsAnyMethod METHOD = new StringContainsAnyMethod();
+
+    @Override
+    public String getName() {
+        return "stringContainsAny";
+    }
+
+    @Override
+    public AviatorObject variadicCall(Map<String, Object> env, AviatorObject... args) {
+        Object[] values = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            values[i] = args[i].getValue(env);
+        }
+        return AviatorBoolean.valueOf(Boolean.TRUE.equals(METHOD.execute(values)));
+    }
+
+}
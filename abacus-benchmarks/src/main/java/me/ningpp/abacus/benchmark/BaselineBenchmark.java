@@ -0,0 +1,130 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus.benchmark;
+
+import com.googlecode.aviator.AviatorEvaluator;
+import com.googlecode.aviator.AviatorEvaluatorInstance;
+import com.googlecode.aviator.Expression;
+import com.googlecode.aviator.Options;
+import com.googlecode.aviator.lexer.token.OperatorType;
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.Operator;
+import me.ningpp.abacus.AbacusUtil;
+import me.ningpp.abacus.CompiledExpression;
+import me.ningpp.abacus.methods.StringContainsAnyMethod;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Abacus against Aviator and QLExpress on the same corpus, all of them compiled once in the setup.
+ * MVEL has no min/max or conditionals of this shape, see {@link MvelBaselineBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BaselineBenchmark {
+
+    @Param({Corpus.PERFORMANCE, Corpus.RANDOM})
+    public String corpus;
+
+    @Param("42")
+    public long seed;
+
+    @Param("16")
+    public int size;
+
+    private Corpus inputs;
+
+    private CompiledExpression[] abacusExpressions;
+
+    private Expression[] aviatorExpressions;
+
+    private ExpressRunner qlRunner;
+
+    @Setup
+    public void setup() throws Exception {
+        inputs = Corpus.of(corpus, seed, size);
+        AviatorEvaluatorInstance aviator = AviatorEvaluator.newInstance();
+        aviator.setOption(Options.ALWAYS_PARSE_FLOATING_POINT_NUMBER_INTO_DECIMAL, true);
+        aviator.addOpFunction(OperatorType.DIV, new AviatorDivFunction(inputs.getScale(), inputs.getRoundingMode()));
+        aviator.addFunction(new AviatorStringContainsAnyFunction());
+        qlRunner = new ExpressRunner(true, false);
+        qlRunner.addFunction("stringContainsAny", new QLStringContainsAnyOperator());
+
+        abacusExpressions = new CompiledExpression[inputs.size()];
+        aviatorExpressions = new Expression[inputs.size()];
+        for (int i = 0; i < inputs.size(); i++) {
+            abacusExpressions[i] = AbacusUtil.compile(inputs.getExpression(i), inputs.getScale(),
+                    inputs.getRoundingMode(), inputs.getMathContext());
+            aviatorExpressions[i] = aviator.compile(inputs.getExpression(i), false);
+            // parses once into the runner cache
+            qlExecute(i);
+        }
+    }
+
+    @Benchmark
+    public void abacus(Blackhole blackhole) {
+        for (int i = 0; i < abacusExpressions.length; i++) {
+            blackhole.consume(abacusExpressions[i].calculate(inputs.getContext(i)));
+        }
+    }
+
+    @Benchmark
+    public void aviator(Blackhole blackhole) {
+        for (int i = 0; i < aviatorExpressions.length; i++) {
+            blackhole.consume(aviatorExpressions[i].execute(inputs.getContext(i)));
+        }
+    }
+
+    @Benchmark
+    public void qlExpress(Blackhole blackhole) throws Exception {
+        for (int i = 0; i < inputs.size(); i++) {
+            blackhole.consume(qlExecute(i));
+        }
+    }
+
+    private Object qlExecute(int i) throws Exception {
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.putAll(inputs.getContext(i));
+        return qlRunner.execute(inputs.getExpression(i), context, null, true, false);
+    }
+
+    private static class QLStringContainsAnyOperator extends Operator {
+        private static final StringContainsAnyMethod METHOD = new StringContainsAnyMethod();
+
+        @Override
+        public Object executeInner(Object[] list) {
+            return METHOD.execute(list);
+        }
+    }
+
+}
@@ -0,0 +1,237 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus.benchmark;
+
+import me.ningpp.abacus.AbacusUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The inputs of the benchmarks, every engine runs on the same expressions and contexts.
+ * Random expressions that can't be calculated (division by zero) are skipped, so each one runs cleanly.
+ * <ul>
+ *     <li>{@code performance}: the formula of {@code AbacusPerformanceTest}, $1..$31 bound to 1..31, scale 7</li>
+ *     <li>{@code random}: seeded expressions with conditionals and min/max, as {@code AbacusUtilTest#randomCalculateTest},
+ *     scale 10</li>
+ *     <li>{@code arithmetic}: seeded expressions of decimal literals and + - * /, as {@code AbacusUtilTest#abacusMvelTest},
+ *     {@link MathContext#DECIMAL128}</li>
+ * </ul>
+ */
+public final class Corpus {
+
+    public static final String PERFORMANCE = "performance";
+    public static final String RANDOM = "random";
+    public static final String ARITHMETIC = "arithmetic";
+
+    private static final List<String> OPERATORS = List.of("+", "-", "*", "/");
+
+    private static final List<String> CONDITIONS = List.of("<", "<=", ">", ">=", "==", "!=");
+
+    private final List<String> expressions;
+    private final List<Map<String, Object>> contexts;
+    private final int scale;
+    private final RoundingMode roundingMode;
+    private final MathContext mathContext;
+
+    private Corpus(List<String> expressions, List<Map<String, Object>> contexts,
+            int scale, RoundingMode roundingMode, MathContext mathContext) {
+        this.expressions = expressions;
+        this.contexts = contexts;
+        this.scale = scale;
+        this.roundingMode = roundingMode;
+        this.mathContext = mathContext;
+    }
+
+    public static Corpus of(String name, long seed, int size) {
+        if (PERFORMANCE.equals(name)) {
+            return new Corpus(List.of(performanceFormula()), List.of(Collections.unmodifiableMap(performanceContext())),
+                    7, RoundingMode.HALF_UP, null);
+        }
+        boolean arithmetic = ARITHMETIC.equals(name);
+        if (!arithmetic && !RANDOM.equals(name)) {
+            throw new IllegalArgumentException("unknown corpus " + name);
+        }
+        int scale = arithmetic ? MathContext.DECIMAL128.getPrecision() : 10;
+        RoundingMode roundingMode = arithmetic ? MathContext.DECIMAL128.getRoundingMode() : RoundingMode.HALF_UP;
+        MathContext mathContext = arithmetic ? MathContext.DECIMAL128 : null;
+        List<String> expressions = new ArrayList<>(size);
+        List<Map<String, Object>> contexts = new ArrayList<>(size);
+        Random random = new Random(seed);
+        while (expressions.size() < size) {
+            Map<String, Object> context = new LinkedHashMap<>();
+            String expression = arithmetic ? arithmeticExpression(random) : randomExpression(random, context);
+            try {
+                AbacusUtil.calculate(AbacusUtil.parse(expression), context, scale, roundingMode, mathContext);
+            } catch (ArithmeticException e) {
+                continue;
+            }
+            expressions.add(expression);
+            contexts.add(Collections.unmodifiableMap(context));
+        }
+        return new Corpus(List.copyOf(expressions), List.copyOf(contexts), scale, roundingMode, mathContext);
+    }
+
+    public int size() {
+        return expressions.size();
+    }
+
+    public String getExpression(int i) {
+        return expressions.get(i);
+    }
+
+    public Map<String, Object> getContext(int i) {
+        return contexts.get(i);
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public RoundingMode getRoundingMode() {
+        return roundingMode;
+    }
+
+    public MathContext getMathContext() {
+        return mathContext;
+    }
+
+    private static String performanceFormula() {
+        try (InputStream in = Corpus.class.getResourceAsStream("performance-formula.txt")) {
+            if (in == null) {
+                throw new IllegalStateException("performance-formula.txt not found");
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Map<String, Object> performanceContext() {
+        Map<String, Object> context = new HashMap<>();
+        for (int i = 0; i < 31; i++) {
+            context.put("$" + (i + 1), new BigDecimal(i + 1));
+        }
+        return context;
+    }
+
+    private static String randomExpression(Random random, Map<String, Object> context) {
+        int terms = random.nextInt(1, 32);
+        int variableCount = random.nextInt(0, terms + 1);
+        int depth = random.nextInt(0, 11);
+        for (int i = 0; i < variableCount; i++) {
+            context.put("$" + (i + 1), randomValue(random));
+        }
+        List<String> parts = new ArrayList<>(context.keySet());
+        for (int i = variableCount; i < terms; i++) {
+            parts.add(randomValue(random).toPlainString());
+        }
+        return generate(true, true, depth, parts, random);
+    }
+
+    private static String arithmeticExpression(Random random) {
+        int terms = random.nextInt(32, 53);
+        int depth = random.nextInt(1, 8);
+        List<String> parts = new ArrayList<>(terms);
+        for (int i = 0; i < terms; i++) {
+            parts.add(BigDecimal.valueOf(random.nextDouble()).multiply(BigDecimal.valueOf(31)).toPlainString() + "B");
+        }
+        return generate(false, false, depth, parts, random);
+    }
+
+    private static String generate(boolean genConditional, boolean genMinMaxMethod, int depth,
+            List<String> parts, Random random) {
+        if (depth == 0) {
+            List<String> expressionParts = new ArrayList<>(parts);
+            Collections.shuffle(expressionParts, random);
+            StringBuilder builder = new StringBuilder();
+            int last = expressionParts.size() - 1;
+            for (int i = 0; i <= last; i++) {
+                builder.append(expressionParts.get(i));
+                if (i != last) {
+                    builder.append(OPERATORS.get(random.nextInt(OPERATORS.size())));
+                }
+            }
+            return builder.toString();
+        }
+
+        if (genMinMaxMethod && random.nextInt(101) < 8) {
+            int paramCount = 2 + random.nextInt(0, 3);
+            String methodName = random.nextBoolean() ? "max" : "min";
+            List<String> params = new ArrayList<>(paramCount);
+            for (int i = 0; i < paramCount; i++) {
+                params.add(generate(genConditional, genMinMaxMethod, depth - 1, parts, random));
+            }
+            return String.format(Locale.ROOT, " %s( %s ) ", methodName, String.join(", ", params));
+        }
+
+        if (genConditional && random.nextInt(101) < 8) {
+            String conditionExpr;
+            if (random.nextBoolean()) {
+                String format = random.nextBoolean() ? " %s && %s " : " %s || %s ";
+                conditionExpr = String.format(Locale.ROOT, format, randomSimpleCondition(random),
+                        randomSimpleCondition(random));
+            } else {
+                conditionExpr = randomSimpleCondition(random);
+            }
+            String thenExpr = generate(genConditional, genMinMaxMethod, depth - 1, parts, random);
+            String elseExpr = generate(genConditional, genMinMaxMethod, depth - 1, parts, random);
+            return String.format(Locale.ROOT, " ( (%s) ? (%s) : ((%s)) ) ", conditionExpr, thenExpr, elseExpr);
+        }
+
+        if (random.nextInt(11) > 2) {
+            if (random.nextInt(11) > 6) {
+                return "(" + generate(genConditional, genMinMaxMethod, depth - 1, parts, random) + ")"
+                        + OPERATORS.get(random.nextInt(OPERATORS.size()))
+                        + generate(genConditional, genMinMaxMethod, depth - 1, parts, random);
+            } else {
+                return "(" + parts.get(random.nextInt(parts.size()))
+                        + OPERATORS.get(random.nextInt(OPERATORS.size()))
+                        + generate(genConditional, genMinMaxMethod, depth - 1, parts, random) + ")";
+            }
+        } else {
+            return parts.get(random.nextInt(parts.size()))
+                    + OPERATORS.get(random.nextInt(OPERATORS.size()))
+                    + generate(genConditional, genMinMaxMethod, depth, parts, random);
+        }
+    }
+
+    private static String randomSimpleCondition(Random random) {
+        return String.format(Locale.ROOT, " %d %s %d ", random.nextInt(11),
+                CONDITIONS.get(random.nextInt(CONDITIONS.size())), random.nextInt(11));
+    }
+
+    private static BigDecimal randomValue(Random random) {
+        String val = random.nextBoolean()
+                ? String.valueOf(random.nextInt(1, 11))
+                : random.nextInt(0, 11) + "." + String.format(Locale.ROOT, "%03d", random.nextInt(1000));
+        return new BigDecimal(val);
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus.benchmark;
+
+import me.ningpp.abacus.AbacusUtil;
+import me.ningpp.abacus.BytecodeCompiler;
+import me.ningpp.abacus.ClosureCompiler;
+import me.ningpp.abacus.CollapseUtil;
+import me.ningpp.abacus.CompiledExpression;
+import me.ningpp.abacus.DoubleCompiler;
+import me.ningpp.abacus.ExpressionDTO;
+import me.ningpp.abacus.ExpressionExecutor;
+import me.ningpp.abacus.NumericMode;
+import me.ningpp.abacus.TierPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of a whole corpus per operation, in every execution mode of Abacus.
+ * {@code calculate} is the one-off {@link AbacusUtil#calculateCollapse} path, {@code tiered} is
+ * {@link AbacusUtil#compile} with {@link TierPolicy#DEFAULT}, the others pin one backend
+ * ({@code double} is {@link NumericMode#DOUBLE}, which doesn't calculate the same results).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EvaluateBenchmark {
+
+    @Param({Corpus.PERFORMANCE, Corpus.RANDOM})
+    public String corpus;
+
+    @Param({"calculate", "interpreter", "closure", "bytecode", "tiered", "double"})
+    public String mode;
+
+    @Param("42")
+    public long seed;
+
+    @Param("16")
+    public int size;
+
+    private Corpus inputs;
+
+    private List<ExpressionDTO>[] collapsed;
+
+    private ExpressionExecutor[] executors;
+
+    private Object[][] variables;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        inputs = Corpus.of(corpus, seed, size);
+        collapsed = new List[inputs.size()];
+        executors = new ExpressionExecutor[inputs.size()];
+        variables = new Object[inputs.size()][];
+        for (int i = 0; i < inputs.size(); i++) {
+            collapsed[i] = CollapseUtil.collapse(AbacusUtil.parse(inputs.getExpression(i)).getExpressions());
+            CompiledExpression compiled = AbacusUtil.compileCollapse(collapsed[i], inputs.getScale(),
+                    inputs.getRoundingMode(), inputs.getMathContext(),
+                    "tiered".equals(mode) ? TierPolicy.DEFAULT : TierPolicy.INTERPRETER_ONLY);
+            executors[i] = switch (mode) {
+                case "closure" -> ClosureCompiler.compile(compiled);
+                case "bytecode" -> BytecodeCompiler.compile(compiled);
+                case "double" -> DoubleCompiler.compile(compiled);
+                default -> compiled;
+            };
+            variables[i] = compiled.bindVariables(inputs.getContext(i));
+        }
+    }
+
+    @Benchmark
+    public void evaluate(Blackhole blackhole) {
+        if ("calculate".equals(mode)) {
+            for (int i = 0; i < collapsed.length; i++) {
+                blackhole.consume(AbacusUtil.calculateCollapse(collapsed[i], inputs.getContext(i),
+                        inputs.getScale(), inputs.getRoundingMode(), inputs.getMathContext()));
+            }
+        } else {
+            for (int i = 0; i < executors.length; i++) {
+                blackhole.consume(executors[i].execute(variables[i]));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus.benchmark;
+
+import me.ningpp.abacus.AbacusUtil;
+import me.ningpp.abacus.BytecodeCompiler;
+import me.ningpp.abacus.ClosureCompiler;
+import me.ningpp.abacus.CollapseUtil;
+import me.ningpp.abacus.CompiledExpression;
+import me.ningpp.abacus.ExpressionExecutor;
+import me.ningpp.abacus.IntermediatePolicy;
+import me.ningpp.abacus.TierPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of a whole corpus per operation under each {@link IntermediatePolicy}.
+ * {@code exact} keeps every digit of the chain values, {@code scale} and {@code precision}
+ * round them, which costs a little per chain but keeps long products from growing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IntermediatePolicyBenchmark {
+
+    @Param({Corpus.PERFORMANCE, Corpus.RANDOM})
+    public String corpus;
+
+    @Param({"exact", "scale", "precision"})
+    public String policy;
+
+    @Param({"interpreter", "closure", "bytecode"})
+    public String mode;
+
+    @Param("42")
+    public long seed;
+
+    @Param("16")
+    public int size;
+
+    private ExpressionExecutor[] executors;
+
+    private Object[][] variables;
+
+    @Setup
+    public void setup() {
+        Corpus inputs = Corpus.of(corpus, seed, size);
+        IntermediatePolicy intermediatePolicy = switch (policy) {
+            case "scale" -> IntermediatePolicy.maxScale(inputs.getScale(), RoundingMode.HALF_EVEN);
+            case "precision" -> IntermediatePolicy.maxPrecision(MathContext.DECIMAL64);
+            default -> IntermediatePolicy.EXACT;
+        };
+        executors = new ExpressionExecutor[inputs.size()];
+        variables = new Object[inputs.size()][];
+        for (int i = 0; i < inputs.size(); i++) {
+            CompiledExpression compiled = AbacusUtil.compileCollapse(
+                    CollapseUtil.collapse(AbacusUtil.parse(inputs.getExpression(i)).getExpressions()),
+                    inputs.getScale(), inputs.getRoundingMode(), inputs.getMathContext(),
+                    TierPolicy.INTERPRETER_ONLY, intermediatePolicy);
+            executors[i] = switch (mode) {
+                case "closure" -> ClosureCompiler.compile(compiled);
+                case "bytecode" -> BytecodeCompiler.compile(compiled);
+                default -> compiled;
+            };
+            variables[i] = compiled.bindVariables(inputs.getContext(i));
+        }
+    }
+
+    @Benchmark
+    public void evaluate(Blackhole blackhole) {
+        for (int i = 0; i < executors.length; i++) {
+            blackhole.consume(executors[i].execute(variables[i]));
+        }
+    }
+
+}
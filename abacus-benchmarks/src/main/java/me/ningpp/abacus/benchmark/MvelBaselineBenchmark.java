@@ -0,0 +1,86 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus.benchmark;
+
+import me.ningpp.abacus.AbacusUtil;
+import me.ningpp.abacus.CompiledExpression;
+import org.mvel2.MVEL;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Abacus against MVEL on the arithmetic corpus, both compiled once in the setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MvelBaselineBenchmark {
+
+    @Param("42")
+    public long seed;
+
+    @Param("16")
+    public int size;
+
+    private Corpus inputs;
+
+    private CompiledExpression[] abacusExpressions;
+
+    private Serializable[] mvelExpressions;
+
+    @Setup
+    public void setup() {
+        inputs = Corpus.of(Corpus.ARITHMETIC, seed, size);
+        abacusExpressions = new CompiledExpression[inputs.size()];
+        mvelExpressions = new Serializable[inputs.size()];
+        for (int i = 0; i < inputs.size(); i++) {
+            abacusExpressions[i] = AbacusUtil.compile(inputs.getExpression(i), inputs.getScale(),
+                    inputs.getRoundingMode(), inputs.getMathContext());
+            mvelExpressions[i] = MVEL.compileExpression(inputs.getExpression(i));
+        }
+    }
+
+    @Benchmark
+    public void abacus(Blackhole blackhole) {
+        for (int i = 0; i < abacusExpressions.length; i++) {
+            blackhole.consume(abacusExpressions[i].calculate(inputs.getContext(i)));
+        }
+    }
+
+    @Benchmark
+    public void mvel(Blackhole blackhole) {
+        for (int i = 0; i < mvelExpressions.length; i++) {
+            blackhole.consume(MVEL.executeExpression(mvelExpressions[i], inputs.getContext(i)));
+        }
+    }
+
+}
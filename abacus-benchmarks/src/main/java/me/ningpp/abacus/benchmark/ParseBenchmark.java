@@ -0,0 +1,85 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus.benchmark;
+
+import me.ningpp.abacus.AbacusUtil;
+import me.ningpp.abacus.CollapseUtil;
+import me.ningpp.abacus.ExpressionResultDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AbacusUtil#parse} and {@link CollapseUtil#collapse} over a whole corpus per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({Corpus.PERFORMANCE, Corpus.RANDOM, Corpus.ARITHMETIC})
+    public String corpus;
+
+    @Param("42")
+    public long seed;
+
+    @Param("16")
+    public int size;
+
+    private Corpus inputs;
+
+    private List<ExpressionResultDTO> parsed;
+
+    @Setup
+    public void setup() {
+        inputs = Corpus.of(corpus, seed, size);
+        parsed = new ArrayList<>(inputs.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            parsed.add(AbacusUtil.parse(inputs.getExpression(i)));
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        for (int i = 0; i < inputs.size(); i++) {
+            blackhole.consume(AbacusUtil.parse(inputs.getExpression(i)));
+        }
+    }
+
+    @Benchmark
+    public void collapse(Blackhole blackhole) {
+        for (ExpressionResultDTO resultDto : parsed) {
+            blackhole.consume(CollapseUtil.collapse(resultDto.getExpressions()));
+        }
+    }
+
+}
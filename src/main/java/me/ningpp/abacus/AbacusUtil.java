@@ -24,6 +24,7 @@ import me.ningpp.abacus.calculator.ConditionalConditionCalculator;
 import me.ningpp.abacus.calculator.ConditionalElseCalculator;
 import me.ningpp.abacus.calculator.ConditionalOrCalculator;
 import me.ningpp.abacus.calculator.ConditionalThenCalculator;
+import me.ningpp.abacus.calculator.ConstantCalculator;
 import me.ningpp.abacus.calculator.EqualityCalculator;
 import me.ningpp.abacus.calculator.ExpressionCalculator;
 import me.ningpp.abacus.calculator.MethodInvocationCalculator;
@@ -35,14 +36,38 @@ import me.ningpp.abacus.calculator.StringLiteralCalculator;
 import me.ningpp.abacus.calculator.SymbolCalculator;
 import me.ningpp.abacus.calculator.UnaryCalculator;
 import me.ningpp.abacus.calculator.VariableCalculator;
+import me.ningpp.abacus.exception.SyntaxException;
+import me.ningpp.abacus.parser.PrattParser;
+import me.ningpp.abacus.translator.ExpressionTreeBuilder;
+import me.ningpp.abacus.translator.SourceCharStream;
+import me.ningpp.abacus.translator.SourceText;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.apache.commons.collections4.CollectionUtils;
 
 import java.math.MathContext;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public final class AbacusUtil {
 
@@ -72,15 +97,313 @@ public final class AbacusUtil {
         CALCULATORS[ExpressionType.SYMBOL.ordinal()] = new SymbolCalculator();
         CALCULATORS[ExpressionType.UNARY.ordinal()] = new UnaryCalculator();
         CALCULATORS[ExpressionType.VARIABLE.ordinal()] = new VariableCalculator();
+        CALCULATORS[ExpressionType.CONSTANT.ordinal()] = new ConstantCalculator();
     }
 
+    private static volatile boolean stacklessSyntaxExceptions = Boolean.getBoolean("abacus.stacklessSyntaxExceptions");
+
     public static ExpressionResultDTO parse(String inputExpression) {
-        AbacusLexer lexer = new AbacusLexer(CharStreams.fromString(inputExpression));
-        AbacusParser parser = new AbacusParser(new CommonTokenStream(lexer));
+        return parse((CharSequence) inputExpression);
+    }
+
+    // nothing is copied, the parsed expression refers to the characters where they are (and copies out the text
+    // of a node when it is needed), so they must not change while it is in use
+    public static ExpressionResultDTO parse(CharSequence inputExpression) {
+        ExpressionDTO expression = PrattParser.parse(inputExpression);
+        return expression == null ? parseWithAntlr(inputExpression) : collapsedResult(expression);
+    }
+
+    // parses without throwing, a syntax error fails the outcome, which has all the errors found and where they are
+    public static ParseOutcome tryParse(String inputExpression) {
+        ExpressionDTO expression = PrattParser.parse(inputExpression);
+        return expression == null ? new AntlrParser().tryParse(inputExpression)
+                : ParseOutcome.success(inputExpression, collapsedResult(expression));
+    }
+
+    public static boolean isStacklessSyntaxExceptions() {
+        return stacklessSyntaxExceptions;
+    }
+
+    // thrown syntax exceptions have no stack trace when set, which makes them much cheaper where malformed input
+    // is common; also set with -Dabacus.stacklessSyntaxExceptions=true
+    public static void setStacklessSyntaxExceptions(boolean stackless) {
+        stacklessSyntaxExceptions = stackless;
+    }
+
+    public static ExpressionResultDTO parse(char[] chars, int offset, int length) {
+        return parse(CharBuffer.wrap(chars, offset, length).slice());
+    }
+
+    // the UTF-8 bytes from the position to the limit of the buffer, its position stays where it is;
+    // ASCII (the usual case) is read where it is, anything else is decoded first
+    public static ExpressionResultDTO parse(ByteBuffer utf8) {
+        ByteBuffer bytes = utf8.slice();
+        for (int i = 0, length = bytes.limit(); i < length; i++) {
+            if (bytes.get(i) < 0) {
+                return parse(StandardCharsets.UTF_8.decode(bytes));
+            }
+        }
+        return parse(new AsciiCharSequence(bytes));
+    }
+
+    // checks the syntax without building a tree, a syntax error is thrown as parse would throw it
+    public static void validate(String inputExpression) {
+        if (!PrattParser.recognize(inputExpression, null, null)) {
+            new AntlrParser().validate(inputExpression);
+        }
+    }
+
+    // the variable names of the expression in the order they first appear, a syntax error is thrown as parse
+    // would throw it; the tokens are enough unless the hand-written parser gives up, then the tree is searched
+    public static Set<String> referencedVariables(String inputExpression) {
+        return referencedNames(inputExpression, true);
+    }
+
+    // the method names of the expression in the order they first appear, see referencedVariables
+    public static Set<String> referencedMethods(String inputExpression) {
+        return referencedNames(inputExpression, false);
+    }
+
+    private static Set<String> referencedNames(String inputExpression, boolean variables) {
+        Set<String> names = new LinkedHashSet<>();
+        if (PrattParser.recognize(inputExpression, variables ? names : null, variables ? null : names)) {
+            return names;
+        }
+        names.clear();
+        Deque<ExpressionDTO> stack = new ArrayDeque<>(parse(inputExpression).getExpressions());
+        while (!stack.isEmpty()) {
+            ExpressionDTO exp = stack.pop();
+            if (exp.getType() == ExpressionType.VARIABLE && variables) {
+                names.add(exp.getText());
+            } else if (exp.getType() == ExpressionType.SYMBOL && !variables && !isOperator(exp.getText())) {
+                // the name of a method invocation, or all that is left of one without arguments
+                names.add(exp.getText());
+            }
+            List<ExpressionDTO> children = exp.getChildren();
+            if (children != null) {
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stack.push(children.get(i));
+                }
+            }
+        }
+        return names;
+    }
+
+    private static boolean isOperator(String symbol) {
+        return !symbol.isEmpty() && "+-*/&|=!<>".indexOf(symbol.charAt(0)) >= 0;
+    }
+
+    // the reference parser, for everything the hand-written parser gives up on
+    static ExpressionResultDTO parseWithAntlr(CharSequence inputExpression) {
+        return new AntlrParser().parse(inputExpression);
+    }
+
+    // parses every expression, in parallel on the common pool, a syntax error fails its own outcome only
+    public static List<ParseOutcome> parseAll(Collection<String> expressions) {
+        return parseAll(expressions, ForkJoinPool.commonPool());
+    }
+
+    public static List<ParseOutcome> parseAll(Collection<String> expressions, ForkJoinPool pool) {
+        if (expressions == null) {
+            throw new IllegalArgumentException("expressions is null");
+        }
+        if (pool == null) {
+            throw new IllegalArgumentException("pool is null");
+        }
+        String[] inputs = expressions.toArray(new String[0]);
+        ParseOutcome[] outcomes = new ParseOutcome[inputs.length];
+        ParseAllTask task = new ParseAllTask(inputs, outcomes, 0, inputs.length);
+        if (inputs.length <= ParseAllTask.THRESHOLD) {
+            task.compute();
+        } else {
+            pool.invoke(task);
+        }
+        return Arrays.asList(outcomes);
+    }
+
+    private static ExpressionResultDTO collapsedResult(ExpressionDTO expression) {
+        ExpressionResultDTO dto = new ExpressionResultDTO();
+        dto.setExpressions(List.of(expression));
+        dto.setCollapsed(true);
+        return dto;
+    }
+
+    // the generated parser recurses once per nesting level, input too deep for the thread stack is a syntax error
+    private static void parseExpression(AbacusParser parser, ExpressionTreeBuilder builder,
+            SyntaxErrorListener errorListener) {
+        try {
+            predictAndParse(parser, builder, errorListener);
+        } catch (StackOverflowError e) {
+            Token token = parser.getCurrentToken();
+            errorListener.syntaxError(parser, token, token.getLine(), token.getCharPositionInLine(),
+                    "expression is nested too deeply", null);
+        }
+    }
+
+    // SLL prediction is much cheaper and almost always enough, the input is parsed again with full LL
+    // (and reports its errors) only when SLL fails, so results and error messages stay the same
+    // the builder may be null when only the syntax is checked; the full LL pass reports its errors to the listener
+    private static void predictAndParse(AbacusParser parser, ExpressionTreeBuilder builder,
+            SyntaxErrorListener errorListener) {
         parser.removeErrorListeners();
-        parser.addErrorListener(new SyntaxErrorListener());
-        AbacusDefaultVisitor visitor = new AbacusDefaultVisitor();
-        return visitor.visit(parser.expression());
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        try {
+            parser.expression();
+        } catch (ParseCancellationException e) {
+            parser.reset();
+            if (builder != null) {
+                builder.reset();
+            }
+            parser.addErrorListener(errorListener);
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            parser.expression();
+        }
+    }
+
+    // a grammar coverage set: every rule and operator, nested, and the usual mistakes for the error path
+    private static final List<String> WARMUP_EXPRESSIONS = List.of(
+            "1", "1.5B + $a", "-$a * +2 / -(3 - *4) / /5", "(1 + 2) * (3 - 4) / 5 - 6 + 7", "((($a)))", "(\"abc\")",
+            "max()", "max(1)", "max(1, 2, min($a, ($b)))", "stringContainsAny(\"abc\", \"b\") ? 1 : 2",
+            "$a > 1 && $b < 2 || $c >= 3 && $d <= 4", "$a == 1 != ($b != 2)", "$a ? 1 : $b ? 2 : 3",
+            "$a ? $b ? 1 : 2 : 3", "$a > 1 ? max(1, 2) : min(3, 4) + 1", "(1 < 2 ? 3 : 4) + (5 == 6 ? 7 : 8)",
+            "1 /* comment */ + 2 // line",
+            "", "1 +", "(1", "1)", "max(", "max(1,", "1 ? 2", "1 ? 2 :", "1 2", "max(1, 2) 3", "1 < < 2", ") 1");
+
+    public static WarmupReport warmup() {
+        return warmup(WARMUP_EXPRESSIONS);
+    }
+
+    // parses every expression with the hand-written parser and with ANTLR, the ANTLR parser builds its prediction
+    // DFA (shared by all threads) on the way; syntax errors are counted, not thrown
+    public static WarmupReport warmup(Collection<String> expressions) {
+        if (expressions == null) {
+            throw new IllegalArgumentException("expressions is null");
+        }
+        AbacusLexer lexer = new AbacusLexer(CharStreams.fromString(""));
+        DFA[] lexerDfa = lexer.getInterpreter().decisionToDFA;
+        DFA[] parserDfa = new AbacusParser(new CommonTokenStream(lexer)).getInterpreter().decisionToDFA;
+        int lexerStates = dfaStates(lexerDfa);
+        int parserStates = dfaStates(parserDfa);
+        int syntaxErrors = 0;
+        long start = System.nanoTime();
+        for (String expression : expressions) {
+            PrattParser.parse(expression);
+            try {
+                parseWithAntlr(expression);
+            } catch (SyntaxException e) {
+                syntaxErrors++;
+            }
+        }
+        Duration duration = Duration.ofNanos(System.nanoTime() - start);
+        int lexerStatesAfter = dfaStates(lexerDfa);
+        int parserStatesAfter = dfaStates(parserDfa);
+        return new WarmupReport(expressions.size(), syntaxErrors, duration, lexerStatesAfter,
+                lexerStatesAfter - lexerStates, parserStatesAfter, parserStatesAfter - parserStates);
+    }
+
+    private static int dfaStates(DFA[] dfas) {
+        int states = 0;
+        for (DFA dfa : dfas) {
+            // ANTLR adds states while holding this lock
+            synchronized (dfa.states) {
+                states += dfa.states.size();
+            }
+        }
+        return states;
+    }
+
+    // parse results are collapsed already, other trees (AbacusDefaultVisitor, hand-made) are collapsed here
+    private static List<ExpressionDTO> collapse(ExpressionResultDTO resultDto) {
+        return resultDto.isCollapsed() ? resultDto.getExpressions() : CollapseUtil.collapse(resultDto.getExpressions());
+    }
+
+    public static CompiledExpression compile(String inputExpression,
+            int defaultScale, RoundingMode defaultRoundingMode, MathContext mathContext) {
+        return compile(parse(inputExpression), defaultScale, defaultRoundingMode, mathContext);
+    }
+
+    public static CompiledExpression compile(String inputExpression,
+            int defaultScale, RoundingMode defaultRoundingMode) {
+        return compile(inputExpression, defaultScale, defaultRoundingMode, null);
+    }
+
+    public static CompiledExpression compile(ExpressionResultDTO resultDto,
+            int defaultScale, RoundingMode defaultRoundingMode, MathContext mathContext) {
+        List<ExpressionDTO> exps = resultDto == null ? null : collapse(resultDto);
+        return compileCollapse(exps, defaultScale, defaultRoundingMode, mathContext);
+    }
+
+    public static CompiledExpression compile(ExpressionResultDTO resultDto,
+            int defaultScale, RoundingMode defaultRoundingMode) {
+        return compile(resultDto, defaultScale, defaultRoundingMode, null);
+    }
+
+    public static CompiledExpression compile(String inputExpression, int defaultScale,
+            RoundingMode defaultRoundingMode, MathContext mathContext, TierPolicy tierPolicy) {
+        return compile(parse(inputExpression), defaultScale, defaultRoundingMode, mathContext, tierPolicy);
+    }
+
+    public static CompiledExpression compile(ExpressionResultDTO resultDto, int defaultScale,
+            RoundingMode defaultRoundingMode, MathContext mathContext, TierPolicy tierPolicy) {
+        List<ExpressionDTO> exps = resultDto == null ? null : collapse(resultDto);
+        return compileCollapse(exps, defaultScale, defaultRoundingMode, mathContext, tierPolicy);
+    }
+
+    // chain values are rounded by the intermediate policy, see IntermediatePolicy
+    public static CompiledExpression compile(String inputExpression, int defaultScale, RoundingMode defaultRoundingMode,
+            MathContext mathContext, TierPolicy tierPolicy, IntermediatePolicy intermediatePolicy) {
+        return compile(parse(inputExpression), defaultScale, defaultRoundingMode, mathContext, tierPolicy,
+                intermediatePolicy);
+    }
+
+    public static CompiledExpression compile(ExpressionResultDTO resultDto, int defaultScale,
+            RoundingMode defaultRoundingMode, MathContext mathContext, TierPolicy tierPolicy,
+            IntermediatePolicy intermediatePolicy) {
+        List<ExpressionDTO> exps = resultDto == null ? null : collapse(resultDto);
+        return compileCollapse(exps, defaultScale, defaultRoundingMode, mathContext, tierPolicy, intermediatePolicy);
+    }
+
+    // DOUBLE trades decimal exactness for speed, see NumericMode for what changes
+    public static CompiledExpression compile(String inputExpression, int defaultScale,
+            RoundingMode defaultRoundingMode, MathContext mathContext, NumericMode numericMode) {
+        return compile(parse(inputExpression), defaultScale, defaultRoundingMode, mathContext, numericMode);
+    }
+
+    public static CompiledExpression compile(ExpressionResultDTO resultDto, int defaultScale,
+            RoundingMode defaultRoundingMode, MathContext mathContext, NumericMode numericMode) {
+        if (numericMode == null) {
+            throw new IllegalArgumentException("numericMode is null");
+        }
+        List<ExpressionDTO> exps = resultDto == null ? null : collapse(resultDto);
+        return new CompiledExpression(OptimizeUtil.optimize(exps, defaultScale, defaultRoundingMode, mathContext),
+                defaultScale, defaultRoundingMode, mathContext, TierPolicy.DEFAULT, numericMode);
+    }
+
+    public static CompiledExpression compileCollapse(List<ExpressionDTO> exps,
+            int defaultScale, RoundingMode defaultRoundingMode, MathContext mathContext) {
+        return compileCollapse(exps, defaultScale, defaultRoundingMode, mathContext, TierPolicy.DEFAULT);
+    }
+
+    public static CompiledExpression compileCollapse(List<ExpressionDTO> exps, int defaultScale,
+            RoundingMode defaultRoundingMode, MathContext mathContext, TierPolicy tierPolicy) {
+        return compileCollapse(exps, defaultScale, defaultRoundingMode, mathContext, tierPolicy,
+                IntermediatePolicy.EXACT);
+    }
+
+    public static CompiledExpression compileCollapse(List<ExpressionDTO> exps, int defaultScale,
+            RoundingMode defaultRoundingMode, MathContext mathContext, TierPolicy tierPolicy,
+            IntermediatePolicy intermediatePolicy) {
+        if (tierPolicy == null) {
+            throw new IllegalArgumentException("tierPolicy is null");
+        }
+        if (intermediatePolicy == null) {
+            throw new IllegalArgumentException("intermediatePolicy is null");
+        }
+        return new CompiledExpression(OptimizeUtil.optimize(exps, defaultScale, defaultRoundingMode, mathContext,
+                intermediatePolicy), defaultScale, defaultRoundingMode, mathContext, tierPolicy, NumericMode.DECIMAL,
+                intermediatePolicy);
     }
 
     public static Object calculate(ExpressionResultDTO resultDto, Map<String, Object> context,
@@ -88,8 +411,17 @@ public final class AbacusUtil {
         if (resultDto == null) {
             return null;
         }
-        List<ExpressionDTO> exps = CollapseUtil.collapse(resultDto.getExpressions());
-        return calculateCollapse(exps, context, defaultScale, defaultRoundingMode, mathContext);
+        return calculateCollapse(collapse(resultDto), context,
+                defaultScale, defaultRoundingMode, mathContext);
+    }
+
+    public static Object calculate(ExpressionResultDTO resultDto, Map<String, Object> context, int defaultScale,
+            RoundingMode defaultRoundingMode, MathContext mathContext, IntermediatePolicy intermediatePolicy) {
+        if (resultDto == null) {
+            return null;
+        }
+        return calculateCollapse(collapse(resultDto), context,
+                defaultScale, defaultRoundingMode, mathContext, intermediatePolicy);
     }
 
     public static Object calculate(ExpressionResultDTO resultDto, Map<String, Object> context,
@@ -104,34 +436,136 @@ public final class AbacusUtil {
 
     public static Object calculateCollapse(List<ExpressionDTO> exps, Map<String, Object> context,
             int defaultScale, RoundingMode defaultRoundingMode, MathContext mathContext) {
+        return calculateCollapse(exps, context, defaultScale, defaultRoundingMode, mathContext,
+                IntermediatePolicy.EXACT);
+    }
+
+    public static Object calculateCollapse(List<ExpressionDTO> exps, Map<String, Object> context, int defaultScale,
+            RoundingMode defaultRoundingMode, MathContext mathContext, IntermediatePolicy intermediatePolicy) {
         if (CollectionUtils.isEmpty(exps)) {
             return null;
         }
-
-        for (ExpressionDTO exp : exps) {
-            calculateOne(exp, context, defaultScale, defaultRoundingMode, mathContext);
+        if (intermediatePolicy == null) {
+            throw new IllegalArgumentException("intermediatePolicy is null");
         }
-
-        return exps.get(0).getCalculatedValue();
+        // one-off calculation, optimizing would cost more than it saves
+        return new CompiledExpression(exps, defaultScale, defaultRoundingMode, mathContext,
+                TierPolicy.INTERPRETER_ONLY, NumericMode.DECIMAL, intermediatePolicy).calculate(context);
     }
 
+    /**
+     * @deprecated calculators read their values from a {@link CalculateFrame} now, this calculates a one-off
+     * {@link CompiledExpression} and no longer writes the values into the tree,
+     * use {@link #compileCollapse} to calculate an expression more than once
+     */
+    @Deprecated
     public static Object calculateOne(ExpressionDTO exp, Map<String, Object> context,
             int defaultScale, RoundingMode defaultRoundingMode, MathContext mathContext) {
+        if (exp == null) {
+            throw new IllegalArgumentException("exp is null");
+        }
+        return new CompiledExpression(List.of(exp), defaultScale, defaultRoundingMode, mathContext).calculate(context);
+    }
+
+    public static Object calculateOne(ExpressionDTO exp, CalculateFrame frame) {
+        if (frame.isCalculated(exp)) {
+            return frame.getValue(exp);
+        }
         Calculator calculator = CALCULATORS[exp.getType().ordinal()];
         if (calculator == null) {
             throw new IllegalStateException("no calulator for " + exp.getType());
         }
 
-        if (CollectionUtils.isNotEmpty(exp.getChildren())) {
-            for (ExpressionDTO child : exp.getChildren()) {
-                Object childCalculatedValue = calculateOne(child, context, defaultScale, defaultRoundingMode, mathContext);
-                child.setCalculatedValue(childCalculatedValue);
+        Object calculatedValue = calculator.calculate(exp, frame);
+        frame.setValue(exp, calculatedValue);
+        return calculatedValue;
+    }
+
+    private static final class ParseAllTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private static final int THRESHOLD = 256;
+
+        private final String[] inputs;
+        private final ParseOutcome[] outcomes;
+        private final int from;
+        private final int to;
+
+        private ParseAllTask(String[] inputs, ParseOutcome[] outcomes, int from, int to) {
+            this.inputs = inputs;
+            this.outcomes = outcomes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ParseAllTask(inputs, outcomes, from, middle),
+                        new ParseAllTask(inputs, outcomes, middle, to));
+                return;
+            }
+            // one ANTLR lexer and parser for all the inputs of this task the hand-written parser gives up on
+            AntlrParser antlrParser = null;
+            for (int i = from; i < to; i++) {
+                String input = inputs[i];
+                ExpressionDTO expression = PrattParser.parse(input);
+                if (expression != null) {
+                    outcomes[i] = ParseOutcome.success(input, collapsedResult(expression));
+                } else {
+                    if (antlrParser == null) {
+                        antlrParser = new AntlrParser();
+                    }
+                    outcomes[i] = antlrParser.tryParse(input);
+                }
             }
         }
+    }
 
-        Object calculatedValue = calculator.calculate(exp, context, defaultScale, defaultRoundingMode, mathContext);
-        exp.setCalculatedValue(calculatedValue);
-        return calculatedValue;
+    // an ANTLR lexer and parser that parse one input after the other
+    private static final class AntlrParser {
+        private final AbacusLexer lexer = new AbacusLexer(CharStreams.fromString(""));
+        private final CommonTokenStream tokens = new CommonTokenStream(lexer);
+        private final AbacusParser parser = new AbacusParser(tokens);
+
+        private AntlrParser() {
+            // the collapsed tree is built while parsing, no parse tree is needed
+            parser.setBuildParseTree(false);
+        }
+
+        private ExpressionResultDTO parse(CharSequence inputExpression) {
+            SourceText source = reset(inputExpression);
+            ExpressionTreeBuilder builder = new ExpressionTreeBuilder(parser, source);
+            parser.addParseListener(builder);
+            parseExpression(parser, builder, new SyntaxErrorListener());
+            return collapsedResult(builder.getResult());
+        }
+
+        // the parser recovers from the errors and goes on, so all of them are found
+        private ParseOutcome tryParse(String inputExpression) {
+            SourceText source = reset(inputExpression);
+            ExpressionTreeBuilder builder = new ExpressionTreeBuilder(parser, source);
+            parser.addParseListener(builder);
+            List<SyntaxError> errors = new ArrayList<>();
+            parseExpression(parser, builder, new SyntaxErrorListener(errors));
+            return errors.isEmpty() ? ParseOutcome.success(inputExpression, collapsedResult(builder.getResult()))
+                    : ParseOutcome.failure(inputExpression, errors);
+        }
+
+        private void validate(CharSequence inputExpression) {
+            reset(inputExpression);
+            parseExpression(parser, null, new SyntaxErrorListener());
+        }
+
+        private SourceText reset(CharSequence inputExpression) {
+            SourceText source = new SourceText(inputExpression);
+            lexer.setInputStream(new SourceCharStream(source));
+            tokens.setTokenSource(lexer);
+            parser.setTokenStream(tokens);
+            parser.removeParseListeners();
+            return source;
+        }
     }
 
 }
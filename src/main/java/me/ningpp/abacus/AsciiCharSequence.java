@@ -0,0 +1,54 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ASCII bytes read as chars where they are, from index 0 to the limit of the buffer.
+ */
+final class AsciiCharSequence implements CharSequence {
+
+    private final ByteBuffer bytes;
+
+    AsciiCharSequence(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    @Override
+    public int length() {
+        return bytes.limit();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) bytes.get(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new AsciiCharSequence(bytes.slice(start, end - start));
+    }
+
+    @Override
+    public String toString() {
+        byte[] ascii = new byte[bytes.limit()];
+        bytes.get(0, ascii);
+        return new String(ascii, StandardCharsets.ISO_8859_1);
+    }
+
+}
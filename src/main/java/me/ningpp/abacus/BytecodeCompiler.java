@@ -0,0 +1,544 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+import me.ningpp.abacus.calculator.MethodInvocationCalculator;
+import me.ningpp.abacus.methods.AbacusMethod;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static me.ningpp.abacus.CodeBuilder.AALOAD;
+import static me.ningpp.abacus.CodeBuilder.AASTORE;
+import static me.ningpp.abacus.CodeBuilder.ACONST_NULL;
+import static me.ningpp.abacus.CodeBuilder.ALOAD_0;
+import static me.ningpp.abacus.CodeBuilder.ALOAD_1;
+import static me.ningpp.abacus.CodeBuilder.ALOAD_2;
+import static me.ningpp.abacus.CodeBuilder.ALOAD_3;
+import static me.ningpp.abacus.CodeBuilder.ANEWARRAY;
+import static me.ningpp.abacus.CodeBuilder.ARETURN;
+import static me.ningpp.abacus.CodeBuilder.BIPUSH;
+import static me.ningpp.abacus.CodeBuilder.CHECKCAST;
+import static me.ningpp.abacus.CodeBuilder.DUP;
+import static me.ningpp.abacus.CodeBuilder.GETFIELD;
+import static me.ningpp.abacus.CodeBuilder.GETSTATIC;
+import static me.ningpp.abacus.CodeBuilder.GOTO;
+import static me.ningpp.abacus.CodeBuilder.ICONST_0;
+import static me.ningpp.abacus.CodeBuilder.ICONST_1;
+import static me.ningpp.abacus.CodeBuilder.IFEQ;
+import static me.ningpp.abacus.CodeBuilder.IFGE;
+import static me.ningpp.abacus.CodeBuilder.IFGT;
+import static me.ningpp.abacus.CodeBuilder.IFLE;
+import static me.ningpp.abacus.CodeBuilder.IFLT;
+import static me.ningpp.abacus.CodeBuilder.IFNE;
+import static me.ningpp.abacus.CodeBuilder.IFNONNULL;
+import static me.ningpp.abacus.CodeBuilder.INVOKESPECIAL;
+import static me.ningpp.abacus.CodeBuilder.INVOKESTATIC;
+import static me.ningpp.abacus.CodeBuilder.INVOKEVIRTUAL;
+import static me.ningpp.abacus.CodeBuilder.IXOR;
+import static me.ningpp.abacus.CodeBuilder.LDC_W;
+import static me.ningpp.abacus.CodeBuilder.POP;
+import static me.ningpp.abacus.CodeBuilder.PUTFIELD;
+import static me.ningpp.abacus.CodeBuilder.RETURN;
+import static me.ningpp.abacus.CodeBuilder.SIPUSH;
+import static me.ningpp.abacus.CodeBuilder.SWAP;
+
+/**
+ * Compiles a {@link CompiledExpression} into a hidden class. BigDecimal operations are called directly
+ * when both operands are known to be BigDecimal, otherwise the static helpers of the calculators are called,
+ * so results and exceptions are the same as the interpreter's.
+ * Subtrees larger than {@link #SPLIT_SIZE} bytes and the tails of long operand lists get their own methods,
+ * so huge formulas never hit the 64K method size limit. Shared subtrees get their own method too,
+ * which caches the value per call.
+ */
+public final class BytecodeCompiler {
+
+    static final int SPLIT_SIZE = 4096;
+
+    private static final String CLASS_NAME = "me/ningpp/abacus/BytecodeExpression";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String OBJECT_ARRAY = "[Ljava/lang/Object;";
+    private static final String STRING = "java/lang/String";
+    private static final String DECIMAL = "java/math/BigDecimal";
+    private static final String BOOLEAN = "java/lang/Boolean";
+    private static final String MATH_CONTEXT = "java/math/MathContext";
+    private static final String ROUNDING_MODE = "java/math/RoundingMode";
+    private static final String ABACUS_METHOD = "me/ningpp/abacus/methods/AbacusMethod";
+    private static final String INTERMEDIATE_POLICY = "me/ningpp/abacus/IntermediatePolicy";
+    private static final String ARITHMETIC = "me/ningpp/abacus/calculator/ArithmeticCalculator";
+    private static final String CONDITIONAL = "me/ningpp/abacus/calculator/ConditionalCalculator";
+    private static final String CONDITIONAL_AND = "me/ningpp/abacus/calculator/ConditionalAndCalculator";
+    private static final String RELATIONAL = "me/ningpp/abacus/calculator/RelationalCalculator";
+    private static final String METHOD_INVOCATION = "me/ningpp/abacus/calculator/MethodInvocationCalculator";
+
+    // (variables, cache), the carry methods continue a chain or an argument list with one more value
+    private static final String METHOD_DESCRIPTOR = "([Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;";
+    private static final String CARRY_DESCRIPTOR = "([Ljava/lang/Object;[Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;";
+
+    private final CompiledExpression compiled;
+    private final ClassFileBuilder classFile = new ClassFileBuilder(CLASS_NAME, OBJECT,
+            "me/ningpp/abacus/ExpressionExecutor");
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndexes = new HashMap<>();
+    private final Map<Integer, SharedMethod> sharedMethods = new HashMap<>();
+    private int methodCount;
+
+    private BytecodeCompiler(CompiledExpression compiled) {
+        this.compiled = compiled;
+    }
+
+    public static ExpressionExecutor compile(CompiledExpression compiledExpression) {
+        return new BytecodeCompiler(compiledExpression).define();
+    }
+
+    private record Fragment(CodeBuilder code, boolean decimal) {
+    }
+
+    private record SharedMethod(int methodRef, boolean decimal) {
+    }
+
+    private ExpressionExecutor define() {
+        CodeBuilder run = new CodeBuilder();
+        List<ExpressionDTO> expressions = compiled.getExpressions();
+        if (expressions.isEmpty()) {
+            run.insn(ACONST_NULL, 1);
+        }
+        for (int i = 0; i < expressions.size(); i++) {
+            run.append(emit(expressions.get(i)).code());
+            if (i > 0) {
+                // every expression is calculated, the first one is the result
+                run.insn(POP, -1);
+            }
+        }
+        int runRef = addMethod(run, METHOD_DESCRIPTOR, 3);
+
+        classFile.addField(ClassFileBuilder.ACC_PRIVATE | ClassFileBuilder.ACC_FINAL, "constants", OBJECT_ARRAY);
+        CodeBuilder init = new CodeBuilder();
+        init.insn(ALOAD_0, 1);
+        init.u2Insn(INVOKESPECIAL, classFile.methodRef(OBJECT, "<init>", "()V"), -1);
+        init.insn(ALOAD_0, 1);
+        init.insn(ALOAD_1, 1);
+        init.u2Insn(PUTFIELD, constantsField(), -2);
+        init.insn(RETURN, 0);
+        classFile.addMethod(ClassFileBuilder.ACC_PUBLIC, "<init>", "([Ljava/lang/Object;)V", init, 2);
+
+        CodeBuilder execute = new CodeBuilder();
+        execute.insn(ALOAD_0, 1);
+        execute.insn(ALOAD_1, 1);
+        if (sharedMethods.isEmpty()) {
+            execute.insn(ACONST_NULL, 1);
+        } else {
+            pushInt(execute, compiled.getNodeCount());
+            execute.u2Insn(ANEWARRAY, classFile.classRef(OBJECT), 0);
+        }
+        execute.u2Insn(INVOKESPECIAL, runRef, -2);
+        execute.insn(ARETURN, -1);
+        classFile.addMethod(ClassFileBuilder.ACC_PUBLIC, "execute", "([Ljava/lang/Object;)Ljava/lang/Object;", execute, 2);
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile.toByteArray(), true);
+            MethodHandle constructor = lookup.findConstructor(lookup.lookupClass(),
+                    MethodType.methodType(void.class, Object[].class));
+            Object[] constantArray = constants.toArray();
+            return (ExpressionExecutor) constructor.invoke(constantArray);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("can't define class for expression", e);
+        }
+    }
+
+    private Fragment emit(ExpressionDTO exp) {
+        if (compiled.isShared(exp)) {
+            return callShared(exp);
+        }
+        Fragment fragment = emitNode(exp);
+        if (fragment.code().length() > SPLIT_SIZE) {
+            return call(addMethod(fragment.code(), METHOD_DESCRIPTOR, 3), false, fragment.decimal());
+        }
+        return fragment;
+    }
+
+    private Fragment emitNode(ExpressionDTO exp) {
+        List<ExpressionDTO> children = exp.getChildren();
+        return switch (exp.getType()) {
+            case VARIABLE -> variable(exp);
+            case NUMBER, CONSTANT -> constant(exp.getCalculatedValue());
+            case STRING_LITERAL, SYMBOL -> constant(exp.getText());
+            case ADDITIVE, MULTIPLICATIVE -> chain(exp);
+            case ARITHMETIC -> arithmetic(exp);
+            case CONDITIONAL -> conditional(exp);
+            case CONDITIONAL_OR, CONDITIONAL_AND -> children.size() == 1 ? emit(children.get(0)) : logical(exp);
+            case EQUALITY -> children.size() == 1 ? emit(children.get(0)) : equality(exp);
+            case RELATIONAL -> children.size() == 1 ? emit(children.get(0)) : relational(exp);
+            case METHOD_INVOCATION -> invocation(exp);
+            case PARENTHESIS, EXPRESSION, PRIMARY, UNARY,
+                    CONDITIONAL_CONDITION, CONDITIONAL_THEN, CONDITIONAL_ELSE -> emit(children.get(0));
+        };
+    }
+
+    private Fragment variable(ExpressionDTO exp) {
+        CodeBuilder code = new CodeBuilder();
+        code.insn(ALOAD_1, 1);
+        pushInt(code, compiled.getVariableSlot(exp));
+        code.insn(AALOAD, -1);
+        return new Fragment(code, false);
+    }
+
+    private Fragment constant(Object value) {
+        CodeBuilder code = new CodeBuilder();
+        if (value == null) {
+            code.insn(ACONST_NULL, 1);
+            return new Fragment(code, false);
+        }
+        boolean decimal = value instanceof BigDecimal;
+        loadConstant(code, value, decimal ? DECIMAL : null);
+        return new Fragment(code, decimal);
+    }
+
+    private Fragment chain(ExpressionDTO exp) {
+        List<ExpressionDTO> children = exp.getChildren();
+        Fragment first = emit(children.get(0));
+        if (children.size() == 1) {
+            return first;
+        }
+        CodeBuilder code = new CodeBuilder();
+        code.append(first.code());
+        Fragment chained = continueChain(exp, code, first.decimal(), 2, children.get(1).getText());
+        IntermediatePolicy policy = compiled.getIntermediatePolicy();
+        if (policy.isExact()) {
+            return chained;
+        }
+        // policy.apply(value), the value of a chain is a BigDecimal
+        loadConstant(code, policy, INTERMEDIATE_POLICY);
+        code.insn(SWAP, 0);
+        if (!chained.decimal()) {
+            code.u2Insn(CHECKCAST, classFile.classRef(DECIMAL), 0);
+        }
+        code.u2Insn(INVOKEVIRTUAL, classFile.methodRef(INTERMEDIATE_POLICY, "apply",
+                "(Ljava/math/BigDecimal;)Ljava/math/BigDecimal;"), -1);
+        return new Fragment(code, true);
+    }
+
+    private Fragment continueChain(ExpressionDTO exp, CodeBuilder code, boolean decimal, int start, String symbol) {
+        List<ExpressionDTO> children = exp.getChildren();
+        String preSymbol = symbol;
+        boolean resultDecimal = decimal;
+        for (int i = start; i < children.size(); i++) {
+            ExpressionDTO child = children.get(i);
+            if (child.getType() == ExpressionType.SYMBOL) {
+                preSymbol = child.getText();
+                continue;
+            }
+            if (code.length() > SPLIT_SIZE) {
+                CodeBuilder rest = new CodeBuilder();
+                rest.insn(ALOAD_3, 1);
+                if (resultDecimal) {
+                    rest.u2Insn(CHECKCAST, classFile.classRef(DECIMAL), 0);
+                }
+                Fragment tail = continueChain(exp, rest, resultDecimal, i, preSymbol);
+                code.append(call(addMethod(tail.code(), CARRY_DESCRIPTOR, 4), true, tail.decimal()).code());
+                return new Fragment(code, tail.decimal());
+            }
+            Fragment operand = emit(child);
+            code.append(operand.code());
+            operate(code, preSymbol, resultDecimal, operand.decimal());
+            resultDecimal = true;
+        }
+        return new Fragment(code, resultDecimal);
+    }
+
+    private Fragment arithmetic(ExpressionDTO exp) {
+        String symbol = exp.getChildren().get(0).getText();
+        boolean additiveSymbol = "+".equals(symbol) || "-".equals(symbol);
+        Fragment operand = emit(exp.getChildren().get(1));
+        CodeBuilder code = new CodeBuilder();
+        code.u2Insn(GETSTATIC, classFile.fieldRef(DECIMAL, additiveSymbol ? "ZERO" : "ONE", "Ljava/math/BigDecimal;"), 1);
+        code.append(operand.code());
+        operate(code, symbol, true, operand.decimal());
+        return new Fragment(code, true);
+    }
+
+    private void operate(CodeBuilder code, String symbol, boolean leftDecimal, boolean rightDecimal) {
+        String name = switch (symbol) {
+            case "+" -> "add";
+            case "-" -> "subtract";
+            case "*" -> "multiply";
+            case "/" -> "divide";
+            default -> throw new IllegalArgumentException("unsupport Symbol " + symbol);
+        };
+        boolean divide = "/".equals(symbol);
+        MathContext mathContext = compiled.getMathContext();
+        if (leftDecimal && rightDecimal) {
+            if (mathContext != null) {
+                loadConstant(code, mathContext, MATH_CONTEXT);
+                code.u2Insn(INVOKEVIRTUAL, classFile.methodRef(DECIMAL, name,
+                        "(Ljava/math/BigDecimal;Ljava/math/MathContext;)Ljava/math/BigDecimal;"), -2);
+            } else if (divide) {
+                pushInt(code, compiled.getDefaultScale());
+                loadNullable(code, compiled.getDefaultRoundingMode(), ROUNDING_MODE);
+                code.u2Insn(INVOKEVIRTUAL, classFile.methodRef(DECIMAL, name,
+                        "(Ljava/math/BigDecimal;ILjava/math/RoundingMode;)Ljava/math/BigDecimal;"), -3);
+            } else {
+                code.u2Insn(INVOKEVIRTUAL, classFile.methodRef(DECIMAL, name,
+                        "(Ljava/math/BigDecimal;)Ljava/math/BigDecimal;"), -1);
+            }
+        } else if (divide) {
+            pushInt(code, compiled.getDefaultScale());
+            loadNullable(code, compiled.getDefaultRoundingMode(), ROUNDING_MODE);
+            loadNullable(code, mathContext, MATH_CONTEXT);
+            code.u2Insn(INVOKESTATIC, classFile.methodRef(ARITHMETIC, name,
+                    "(Ljava/lang/Object;Ljava/lang/Object;ILjava/math/RoundingMode;Ljava/math/MathContext;)Ljava/math/BigDecimal;"), -4);
+        } else {
+            loadNullable(code, mathContext, MATH_CONTEXT);
+            code.u2Insn(INVOKESTATIC, classFile.methodRef(ARITHMETIC, name,
+                    "(Ljava/lang/Object;Ljava/lang/Object;Ljava/math/MathContext;)Ljava/math/BigDecimal;"), -2);
+        }
+    }
+
+    private Fragment conditional(ExpressionDTO exp) {
+        Fragment condition = emit(exp.getChildren().get(0));
+        Fragment then = emit(exp.getChildren().get(1));
+        Fragment otherwise = emit(exp.getChildren().get(2));
+        CodeBuilder code = new CodeBuilder();
+        code.append(condition.code());
+        loadConstant(code, exp.getText(), STRING);
+        code.u2Insn(INVOKESTATIC, classFile.methodRef(CONDITIONAL, "condition", "(Ljava/lang/Object;Ljava/lang/String;)Z"), -1);
+        int elseJump = code.jump(IFEQ, -1);
+        code.append(then.code());
+        int endJump = code.jump(GOTO, 0);
+        code.setStack(code.stack() - 1);
+        code.patch(elseJump);
+        code.append(otherwise.code());
+        code.patch(endJump);
+        return new Fragment(code, then.decimal() && otherwise.decimal());
+    }
+
+    private Fragment logical(ExpressionDTO exp) {
+        boolean and = exp.getType() == ExpressionType.CONDITIONAL_AND;
+        Fragment left = emit(exp.getChildren().get(0));
+        Fragment right = emit(exp.getChildren().get(2));
+        CodeBuilder code = new CodeBuilder();
+        code.append(left.code());
+        code.u2Insn(INVOKESTATIC, classFile.methodRef(CONDITIONAL_AND, "leftBoolean", "(Ljava/lang/Object;)Z"), 0);
+        int shortCircuit = code.jump(and ? IFEQ : IFNE, -1);
+        code.append(right.code());
+        code.u2Insn(INVOKESTATIC, classFile.methodRef(CONDITIONAL_AND, "rightBoolean", "(Ljava/lang/Object;)Z"), 0);
+        boxBoolean(code);
+        int endJump = code.jump(GOTO, 0);
+        code.setStack(code.stack() - 1);
+        code.patch(shortCircuit);
+        code.u2Insn(GETSTATIC, classFile.fieldRef(BOOLEAN, and ? "FALSE" : "TRUE", "Ljava/lang/Boolean;"), 1);
+        code.patch(endJump);
+        return new Fragment(code, false);
+    }
+
+    private Fragment equality(ExpressionDTO exp) {
+        Fragment left = emit(exp.getChildren().get(0));
+        Fragment right = emit(exp.getChildren().get(2));
+        CodeBuilder code = new CodeBuilder();
+        code.append(left.code());
+        code.append(right.code());
+        code.u2Insn(INVOKESTATIC, classFile.methodRef("java/util/Objects", "equals", "(Ljava/lang/Object;Ljava/lang/Object;)Z"), -1);
+        if (!"==".equals(exp.getChildren().get(1).getText())) {
+            code.insn(ICONST_1, 1);
+            code.insn(IXOR, -1);
+        }
+        boxBoolean(code);
+        return new Fragment(code, false);
+    }
+
+    private Fragment relational(ExpressionDTO exp) {
+        String symbol = exp.getChildren().get(1).getText();
+        // jump to false when the comparison does not hold
+        int falseOpcode = switch (symbol) {
+            case "<" -> IFGE;
+            case ">" -> IFLE;
+            case "<=" -> IFGT;
+            case ">=" -> IFLT;
+            default -> throw new IllegalArgumentException(exp.getText());
+        };
+        Fragment left = emit(exp.getChildren().get(0));
+        Fragment right = emit(exp.getChildren().get(2));
+        CodeBuilder code = new CodeBuilder();
+        code.append(left.code());
+        code.append(right.code());
+        code.u2Insn(INVOKESTATIC, classFile.methodRef(RELATIONAL, "compare", "(Ljava/lang/Object;Ljava/lang/Object;)I"), -1);
+        int falseJump = code.jump(falseOpcode, -1);
+        code.insn(ICONST_1, 1);
+        int endJump = code.jump(GOTO, 0);
+        code.setStack(code.stack() - 1);
+        code.patch(falseJump);
+        code.insn(ICONST_0, 1);
+        code.patch(endJump);
+        boxBoolean(code);
+        return new Fragment(code, false);
+    }
+
+    private Fragment invocation(ExpressionDTO exp) {
+        List<ExpressionDTO> children = exp.getChildren();
+        String methodName = children.get(0).getText();
+        AbacusMethod method = MethodInvocationCalculator.getMethod(methodName);
+        CodeBuilder code = new CodeBuilder();
+        if (method != null) {
+            loadConstant(code, method, ABACUS_METHOD);
+        } else {
+            // throws MethodNotFoundException when it is reached, like the interpreter does
+            loadConstant(code, methodName, STRING);
+            code.u2Insn(INVOKESTATIC, classFile.methodRef(METHOD_INVOCATION, "requireMethod",
+                    "(Ljava/lang/String;)Lme/ningpp/abacus/methods/AbacusMethod;"), 0);
+        }
+        int argCount = children.size() - 1;
+        if (argCount > 0) {
+            pushInt(code, argCount);
+            code.u2Insn(ANEWARRAY, classFile.classRef(OBJECT), 0);
+            fillArguments(exp, code, 1);
+        } else {
+            code.insn(ACONST_NULL, 1);
+        }
+        code.invokeInterface(classFile.interfaceMethodRef(ABACUS_METHOD, "execute",
+                "([Ljava/lang/Object;)Ljava/lang/Object;"), 1, -1);
+        return new Fragment(code, false);
+    }
+
+    private void fillArguments(ExpressionDTO exp, CodeBuilder code, int start) {
+        List<ExpressionDTO> children = exp.getChildren();
+        for (int i = start; i < children.size(); i++) {
+            if (code.length() > SPLIT_SIZE) {
+                CodeBuilder rest = new CodeBuilder();
+                rest.insn(ALOAD_3, 1);
+                rest.u2Insn(CHECKCAST, classFile.classRef(OBJECT_ARRAY), 0);
+                fillArguments(exp, rest, i);
+                code.append(call(addMethod(rest, CARRY_DESCRIPTOR, 4), true, false).code());
+                code.u2Insn(CHECKCAST, classFile.classRef(OBJECT_ARRAY), 0);
+                return;
+            }
+            Fragment argument = emit(children.get(i));
+            code.insn(DUP, 1);
+            pushInt(code, i - 1);
+            code.append(argument.code());
+            code.insn(AASTORE, -3);
+        }
+    }
+
+    private Fragment callShared(ExpressionDTO exp) {
+        SharedMethod shared = sharedMethods.get(exp.getIndex());
+        if (shared == null) {
+            Fragment fragment = emitNode(exp);
+            CodeBuilder code = new CodeBuilder();
+            // cache[index] ?: (cache[index] = value), a null value is just calculated again
+            code.insn(ALOAD_2, 1);
+            pushInt(code, exp.getIndex());
+            code.insn(AALOAD, -1);
+            code.insn(DUP, 1);
+            int cachedJump = code.jump(IFNONNULL, -1);
+            code.insn(POP, -1);
+            code.append(fragment.code());
+            code.insn(DUP, 1);
+            code.insn(ALOAD_2, 1);
+            code.insn(SWAP, 0);
+            pushInt(code, exp.getIndex());
+            code.insn(SWAP, 0);
+            code.insn(AASTORE, -3);
+            code.patch(cachedJump);
+            shared = new SharedMethod(addMethod(code, METHOD_DESCRIPTOR, 3), fragment.decimal());
+            sharedMethods.put(exp.getIndex(), shared);
+        }
+        return call(shared.methodRef(), false, shared.decimal());
+    }
+
+    private int addMethod(CodeBuilder body, String descriptor, int maxLocals) {
+        String name = "m" + methodCount++;
+        body.insn(ARETURN, -1);
+        classFile.addMethod(ClassFileBuilder.ACC_PRIVATE, name, descriptor, body, maxLocals);
+        return classFile.methodRef(CLASS_NAME, name, descriptor);
+    }
+
+    private Fragment call(int methodRef, boolean carry, boolean decimal) {
+        CodeBuilder code = new CodeBuilder();
+        if (carry) {
+            // the carried value is on the stack already: carry -> this, variables, cache, carry
+            code.insn(ALOAD_0, 1);
+            code.insn(SWAP, 0);
+            code.insn(ALOAD_1, 1);
+            code.insn(SWAP, 0);
+            code.insn(ALOAD_2, 1);
+            code.insn(SWAP, 0);
+            code.u2Insn(INVOKESPECIAL, methodRef, -3);
+        } else {
+            code.insn(ALOAD_0, 1);
+            code.insn(ALOAD_1, 1);
+            code.insn(ALOAD_2, 1);
+            code.u2Insn(INVOKESPECIAL, methodRef, -2);
+        }
+        if (decimal) {
+            code.u2Insn(CHECKCAST, classFile.classRef(DECIMAL), 0);
+        }
+        return new Fragment(code, decimal);
+    }
+
+    private void boxBoolean(CodeBuilder code) {
+        code.u2Insn(INVOKESTATIC, classFile.methodRef(BOOLEAN, "valueOf", "(Z)Ljava/lang/Boolean;"), 0);
+    }
+
+    private void loadNullable(CodeBuilder code, Object value, String type) {
+        if (value == null) {
+            code.insn(ACONST_NULL, 1);
+        } else {
+            loadConstant(code, value, type);
+        }
+    }
+
+    private void loadConstant(CodeBuilder code, Object value, String type) {
+        Integer index = constantIndexes.get(value);
+        if (index == null) {
+            index = constants.size();
+            constants.add(value);
+            constantIndexes.put(value, index);
+        }
+        code.insn(ALOAD_0, 1);
+        code.u2Insn(GETFIELD, constantsField(), 0);
+        pushInt(code, index);
+        code.insn(AALOAD, -1);
+        if (type != null) {
+            code.u2Insn(CHECKCAST, classFile.classRef(type), 0);
+        }
+    }
+
+    private int constantsField() {
+        return classFile.fieldRef(CLASS_NAME, "constants", OBJECT_ARRAY);
+    }
+
+    private void pushInt(CodeBuilder code, int value) {
+        if (value >= -1 && value <= 5) {
+            code.insn(ICONST_0 + value, 1);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            code.u1Insn(BIPUSH, value, 1);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            code.u2Insn(SIPUSH, value, 1);
+        } else {
+            code.u2Insn(LDC_W, classFile.integer(value), 1);
+        }
+    }
+
+}
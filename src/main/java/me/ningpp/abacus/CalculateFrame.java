@@ -0,0 +1,172 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+import me.ningpp.abacus.calculator.ArithmeticCalculator;
+import me.ningpp.abacus.calculator.ScaledDecimal;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Per-call evaluation state of a {@link CompiledExpression}, node values are kept here
+ * (indexed by {@link ExpressionDTO#getIndex()}) instead of in the shared expression tree.
+ * Every node is calculated at most once per frame, {@link #getVisitCount()} tells how many were.
+ * Variables are read from the context map, or from the slot array when the frame was created by
+ * {@link CompiledExpression#evaluate(Object[])} (the context is null then).
+ * Numbers that aren't BigDecimals, usually context values, are converted at most once per frame when
+ * arithmetic needs them as decimals, see {@link #toDecimal} and {@link #getConversionCount()}.
+ * Arithmetic chains accumulate in {@link ScaledDecimal}s borrowed from the frame, one per nesting level.
+ */
+public final class CalculateFrame {
+
+    private static final Object NULL_VALUE = new Object();
+
+    private final Map<String, Object> context;
+    private final Object[] variables;
+    private final int[] variableSlots;
+    private final int defaultScale;
+    private final RoundingMode defaultRoundingMode;
+    private final MathContext mathContext;
+    private final IntermediatePolicy intermediatePolicy;
+    private final Object[] values;
+    // node values converted by toDecimal, created with the first conversion
+    private BigDecimal[] decimals;
+    private int conversionCount;
+    private ScaledDecimal[] accumulators;
+    private int accumulatorDepth;
+    private int visitCount;
+    private Object result;
+
+    CalculateFrame(Map<String, Object> context, Object[] variables, int[] variableSlots,
+            int defaultScale, RoundingMode defaultRoundingMode, MathContext mathContext,
+            IntermediatePolicy intermediatePolicy, int size) {
+        this.context = context;
+        this.variables = variables;
+        this.variableSlots = variableSlots;
+        this.defaultScale = defaultScale;
+        this.defaultRoundingMode = defaultRoundingMode;
+        this.mathContext = mathContext;
+        this.intermediatePolicy = intermediatePolicy;
+        this.values = new Object[size];
+    }
+
+    public Map<String, Object> getContext() {
+        return context;
+    }
+
+    public Object[] getVariables() {
+        return variables;
+    }
+
+    public Object getVariable(ExpressionDTO exp) {
+        if (variables != null) {
+            return variables[variableSlots[exp.getIndex()]];
+        }
+        return context.get(exp.getText());
+    }
+
+    public int getDefaultScale() {
+        return defaultScale;
+    }
+
+    public RoundingMode getDefaultRoundingMode() {
+        return defaultRoundingMode;
+    }
+
+    public MathContext getMathContext() {
+        return mathContext;
+    }
+
+    public IntermediatePolicy getIntermediatePolicy() {
+        return intermediatePolicy;
+    }
+
+    public Object getValue(ExpressionDTO exp) {
+        Object value = values[exp.getIndex()];
+        return value == NULL_VALUE ? null : value;
+    }
+
+    boolean isCalculated(ExpressionDTO exp) {
+        return values[exp.getIndex()] != null;
+    }
+
+    void setValue(ExpressionDTO exp, Object value) {
+        values[exp.getIndex()] = value == null ? NULL_VALUE : value;
+        visitCount++;
+    }
+
+    // an accumulator for a chain, nested chains borrow their own until the outer one releases
+    public ScaledDecimal borrowAccumulator() {
+        if (accumulators == null) {
+            accumulators = new ScaledDecimal[4];
+        } else if (accumulatorDepth == accumulators.length) {
+            accumulators = Arrays.copyOf(accumulators, accumulatorDepth * 2);
+        }
+        ScaledDecimal accumulator = accumulators[accumulatorDepth];
+        if (accumulator == null) {
+            accumulator = new ScaledDecimal();
+            accumulators[accumulatorDepth] = accumulator;
+        }
+        accumulatorDepth++;
+        return accumulator;
+    }
+
+    public void releaseAccumulator() {
+        accumulatorDepth--;
+    }
+
+    // the value of a node for arithmetic, the usual number types are converted once and reused,
+    // anything else is returned as it is and converted (or rejected) where it is used
+    public Object toDecimal(ExpressionDTO exp, Object value) {
+        if (value instanceof BigDecimal || value == null) {
+            return value;
+        }
+        if (decimals == null) {
+            decimals = new BigDecimal[values.length];
+        }
+        BigDecimal decimal = decimals[exp.getIndex()];
+        if (decimal == null) {
+            decimal = ArithmeticCalculator.numberToDecimal(value);
+            if (decimal == null) {
+                return value;
+            }
+            decimals[exp.getIndex()] = decimal;
+            conversionCount++;
+        }
+        return decimal;
+    }
+
+    public int getConversionCount() {
+        return conversionCount;
+    }
+
+    public int getVisitCount() {
+        return visitCount;
+    }
+
+    public Object getResult() {
+        return result;
+    }
+
+    void setResult(Object result) {
+        this.result = result;
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal class file writer for {@link BytecodeCompiler}. Writes version 49 class files,
+ * they are checked by the type inferencing verifier, so no StackMapTable is needed.
+ */
+final class ClassFileBuilder {
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int CLASS_VERSION = 49;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> poolIndexes = new HashMap<>();
+    private int poolCount = 1;
+
+    private final ByteArrayOutputStream members = new ByteArrayOutputStream();
+    private final DataOutputStream membersOut = new DataOutputStream(members);
+    private int fieldCount;
+    private final ByteArrayOutputStream methods = new ByteArrayOutputStream();
+    private final DataOutputStream methodsOut = new DataOutputStream(methods);
+    private int methodCount;
+
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+
+    ClassFileBuilder(String className, String superName, String... interfaceNames) {
+        thisClass = classRef(className);
+        superClass = classRef(superName);
+        interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i++) {
+            interfaces[i] = classRef(interfaceNames[i]);
+        }
+    }
+
+    int utf8(String value) {
+        return constant("U" + value, 1, out -> out.writeUTF(value));
+    }
+
+    int integer(int value) {
+        return constant("I" + value, 3, out -> out.writeInt(value));
+    }
+
+    int classRef(String internalName) {
+        int name = utf8(internalName);
+        return constant("C" + internalName, 7, out -> out.writeShort(name));
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(9, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(10, owner, name, descriptor);
+    }
+
+    int interfaceMethodRef(String owner, String name, String descriptor) {
+        return memberRef(11, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndType = constant("N" + name + ' ' + descriptor, 12, out -> {
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+        return constant(tag + owner + '.' + name + ' ' + descriptor, tag, out -> {
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private int constant(String key, int tag, PoolWriter writer) {
+        Integer index = poolIndexes.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            poolOut.writeByte(tag);
+            writer.write(poolOut);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        index = poolCount++;
+        poolIndexes.put(key, index);
+        return index;
+    }
+
+    void addField(int access, String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        try {
+            membersOut.writeShort(access);
+            membersOut.writeShort(nameIndex);
+            membersOut.writeShort(descriptorIndex);
+            membersOut.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        fieldCount++;
+    }
+
+    void addMethod(int access, String name, String descriptor, CodeBuilder code, int maxLocals) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int codeIndex = utf8("Code");
+        byte[] bytes = code.toByteArray();
+        if (bytes.length > 0xffff) {
+            throw new IllegalStateException("method " + name + " is too large, " + bytes.length + " bytes");
+        }
+        try {
+            methodsOut.writeShort(access);
+            methodsOut.writeShort(nameIndex);
+            methodsOut.writeShort(descriptorIndex);
+            methodsOut.writeShort(1);
+            methodsOut.writeShort(codeIndex);
+            methodsOut.writeInt(12 + bytes.length);
+            methodsOut.writeShort(code.maxStack());
+            methodsOut.writeShort(maxLocals);
+            methodsOut.writeInt(bytes.length);
+            methodsOut.write(bytes);
+            // no exception table, no attributes
+            methodsOut.writeShort(0);
+            methodsOut.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        methodCount++;
+    }
+
+    byte[] toByteArray() {
+        if (poolCount > 0xffff) {
+            throw new IllegalStateException("too many constants " + poolCount);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_VERSION);
+            out.writeShort(poolCount);
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.length);
+            for (int anInterface : interfaces) {
+                out.writeShort(anInterface);
+            }
+            out.writeShort(fieldCount);
+            members.writeTo(out);
+            out.writeShort(methodCount);
+            methods.writeTo(out);
+            // no class attributes
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @FunctionalInterface
+    private interface PoolWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+}
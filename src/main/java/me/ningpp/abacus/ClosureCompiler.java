@@ -0,0 +1,462 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+import me.ningpp.abacus.calculator.ArithmeticCalculator;
+import me.ningpp.abacus.calculator.ConditionalAndCalculator;
+import me.ningpp.abacus.calculator.ConditionalCalculator;
+import me.ningpp.abacus.calculator.MethodInvocationCalculator;
+import me.ningpp.abacus.calculator.RelationalCalculator;
+import me.ningpp.abacus.calculator.ScaledDecimal;
+import me.ningpp.abacus.methods.AbacusMethod;
+import org.apache.commons.collections4.CollectionUtils;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+
+/**
+ * Compiles a {@link CompiledExpression} into a tree of closures. Operators, methods and variable slots
+ * are resolved once at compile time and children are bound directly, so a call does no calculator lookup
+ * and no symbol comparison. Compiling is a single walk over the tree, much cheaper than
+ * {@link BytecodeCompiler}, and it calls the same static helpers as the interpreter.
+ * Without a math context, arithmetic and the comparisons of its results are calculated on
+ * {@link ScaledDecimal}s, a BigDecimal is only created where a value leaves the arithmetic.
+ */
+public final class ClosureCompiler {
+
+    private static final Object NULL_VALUE = new Object();
+
+    private ClosureCompiler() {
+    }
+
+    @FunctionalInterface
+    private interface Closure {
+        Object apply(Object[] variables, Object[] cache);
+    }
+
+    // writes the value of the node to result
+    @FunctionalInterface
+    private interface DecimalClosure {
+        void apply(Object[] variables, Object[] cache, ScaledDecimal result);
+    }
+
+    // result = result symbol operand, an operand calculated as a decimal is written to scratch first
+    @FunctionalInterface
+    private interface DecimalOperation {
+        void apply(Object[] variables, Object[] cache, ScaledDecimal result, ScaledDecimal scratch);
+    }
+
+    @FunctionalInterface
+    private interface DecimalValue {
+        ScaledDecimal apply(Object[] variables, Object[] cache);
+    }
+
+    @FunctionalInterface
+    private interface Operator {
+        BigDecimal apply(Object left, Object right);
+    }
+
+    public static ExpressionExecutor compile(CompiledExpression compiled) {
+        List<ExpressionDTO> expressions = compiled.getExpressions();
+        if (expressions.isEmpty()) {
+            return variables -> null;
+        }
+        boolean[] shared = new boolean[1];
+        Closure[] roots = new Closure[expressions.size()];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = compile(compiled, expressions.get(i), shared);
+        }
+        int cacheSize = shared[0] ? compiled.getNodeCount() : 0;
+        if (roots.length == 1) {
+            Closure root = roots[0];
+            return cacheSize == 0
+                    ? variables -> root.apply(variables, null)
+                    : variables -> root.apply(variables, new Object[cacheSize]);
+        }
+        return variables -> {
+            Object[] cache = cacheSize == 0 ? null : new Object[cacheSize];
+            Object result = roots[0].apply(variables, cache);
+            for (int i = 1; i < roots.length; i++) {
+                roots[i].apply(variables, cache);
+            }
+            return result;
+        };
+    }
+
+    private static Closure compile(CompiledExpression compiled, ExpressionDTO exp, boolean[] shared) {
+        if (CollectionUtils.isNotEmpty(exp.getChildren()) && isDecimal(compiled, exp)) {
+            DecimalValue value = decimalValue(compiled, exp, shared);
+            return (variables, cache) -> value.apply(variables, cache).toBigDecimal();
+        }
+        Closure closure = compileNode(compiled, exp, shared);
+        if (!compiled.isShared(exp)) {
+            return closure;
+        }
+        shared[0] = true;
+        int index = exp.getIndex();
+        return (variables, cache) -> {
+            Object value = cache[index];
+            if (value == null) {
+                value = closure.apply(variables, cache);
+                cache[index] = value == null ? NULL_VALUE : value;
+                return value;
+            }
+            return value == NULL_VALUE ? null : value;
+        };
+    }
+
+    private static Closure compileNode(CompiledExpression compiled, ExpressionDTO exp, boolean[] shared) {
+        List<ExpressionDTO> children = exp.getChildren();
+        return switch (exp.getType()) {
+            case VARIABLE -> {
+                int slot = compiled.getVariableSlot(exp);
+                yield (variables, cache) -> variables[slot];
+            }
+            case NUMBER, CONSTANT -> constant(exp.getCalculatedValue());
+            case STRING_LITERAL, SYMBOL -> constant(exp.getText());
+            case ADDITIVE, MULTIPLICATIVE -> chain(compiled, exp, shared);
+            case ARITHMETIC -> {
+                String symbol = children.get(0).getText();
+                BigDecimal left = "+".equals(symbol) || "-".equals(symbol) ? BigDecimal.ZERO : BigDecimal.ONE;
+                Operator operator = operator(compiled, symbol);
+                Closure operand = compile(compiled, children.get(1), shared);
+                yield (variables, cache) -> operator.apply(left, operand.apply(variables, cache));
+            }
+            case CONDITIONAL -> {
+                Closure condition = compile(compiled, children.get(0), shared);
+                Closure then = compile(compiled, children.get(1), shared);
+                Closure otherwise = compile(compiled, children.get(2), shared);
+                String text = exp.getText();
+                yield (variables, cache) -> ConditionalCalculator.condition(condition.apply(variables, cache), text)
+                        ? then.apply(variables, cache) : otherwise.apply(variables, cache);
+            }
+            case CONDITIONAL_AND -> {
+                if (children.size() == 1) {
+                    yield compile(compiled, children.get(0), shared);
+                }
+                Closure left = compile(compiled, children.get(0), shared);
+                Closure right = compile(compiled, children.get(2), shared);
+                yield (variables, cache) -> ConditionalAndCalculator.leftBoolean(left.apply(variables, cache))
+                        ? (Object) ConditionalAndCalculator.rightBoolean(right.apply(variables, cache)) : Boolean.FALSE;
+            }
+            case CONDITIONAL_OR -> {
+                if (children.size() == 1) {
+                    yield compile(compiled, children.get(0), shared);
+                }
+                Closure left = compile(compiled, children.get(0), shared);
+                Closure right = compile(compiled, children.get(2), shared);
+                yield (variables, cache) -> ConditionalAndCalculator.leftBoolean(left.apply(variables, cache))
+                        ? Boolean.TRUE : (Object) ConditionalAndCalculator.rightBoolean(right.apply(variables, cache));
+            }
+            case EQUALITY -> {
+                if (children.size() == 1) {
+                    yield compile(compiled, children.get(0), shared);
+                }
+                boolean equal = "==".equals(children.get(1).getText());
+                if (isDecimal(compiled, children.get(0)) && isDecimal(compiled, children.get(2))) {
+                    DecimalValue left = decimalValue(compiled, children.get(0), shared);
+                    DecimalValue right = decimalValue(compiled, children.get(2), shared);
+                    yield (variables, cache) -> left.apply(variables, cache)
+                            .equalsDecimal(right.apply(variables, cache)) == equal;
+                }
+                Closure left = compile(compiled, children.get(0), shared);
+                Closure right = compile(compiled, children.get(2), shared);
+                yield (variables, cache) -> Objects.equals(left.apply(variables, cache), right.apply(variables, cache)) == equal;
+            }
+            case RELATIONAL -> {
+                if (children.size() == 1) {
+                    yield compile(compiled, children.get(0), shared);
+                }
+                if (isDecimal(compiled, children.get(0)) && isDecimal(compiled, children.get(2))) {
+                    yield decimalRelational(compiled, exp, shared);
+                }
+                IntPredicate predicate = switch (children.get(1).getText()) {
+                    case "<" -> r -> r < 0;
+                    case ">" -> r -> r > 0;
+                    case "<=" -> r -> r <= 0;
+                    case ">=" -> r -> r >= 0;
+                    default -> throw new IllegalArgumentException(exp.getText());
+                };
+                Closure left = compile(compiled, children.get(0), shared);
+                Closure right = compile(compiled, children.get(2), shared);
+                yield (variables, cache) -> predicate.test(
+                        RelationalCalculator.compare(left.apply(variables, cache), right.apply(variables, cache)));
+            }
+            case METHOD_INVOCATION -> invocation(compiled, exp, shared);
+            case PARENTHESIS, EXPRESSION, PRIMARY, UNARY,
+                    CONDITIONAL_CONDITION, CONDITIONAL_THEN, CONDITIONAL_ELSE -> compile(compiled, children.get(0), shared);
+        };
+    }
+
+    // always a BigDecimal calculated by arithmetic (or a number), so ScaledDecimal can calculate it
+    private static boolean isDecimal(CompiledExpression compiled, ExpressionDTO exp) {
+        if (compiled.getMathContext() != null) {
+            return false;
+        }
+        List<ExpressionDTO> children = exp.getChildren();
+        return switch (exp.getType()) {
+            case NUMBER, CONSTANT -> exp.getCalculatedValue() instanceof BigDecimal;
+            case ARITHMETIC -> true;
+            case ADDITIVE, MULTIPLICATIVE -> children.size() > 1 || isDecimal(compiled, children.get(0));
+            case CONDITIONAL -> isDecimal(compiled, children.get(1)) && isDecimal(compiled, children.get(2));
+            case PARENTHESIS, EXPRESSION, PRIMARY, UNARY, CONDITIONAL_CONDITION, CONDITIONAL_THEN, CONDITIONAL_ELSE,
+                    RELATIONAL, EQUALITY, CONDITIONAL_AND, CONDITIONAL_OR ->
+                    children.size() == 1 && isDecimal(compiled, children.get(0));
+            default -> false;
+        };
+    }
+
+    private static DecimalClosure decimal(CompiledExpression compiled, ExpressionDTO exp, boolean[] shared) {
+        DecimalClosure closure = decimalNode(compiled, exp, shared);
+        if (!compiled.isShared(exp)) {
+            return closure;
+        }
+        shared[0] = true;
+        int index = exp.getIndex();
+        // a copy is cached, the result is changed by the caller
+        return (variables, cache, result) -> {
+            if (cache[index] instanceof ScaledDecimal value) {
+                result.set(value);
+                return;
+            }
+            closure.apply(variables, cache, result);
+            cache[index] = result.copy();
+        };
+    }
+
+    private static DecimalClosure decimalNode(CompiledExpression compiled, ExpressionDTO exp, boolean[] shared) {
+        List<ExpressionDTO> children = exp.getChildren();
+        return switch (exp.getType()) {
+            case NUMBER, CONSTANT -> {
+                ScaledDecimal value = ScaledDecimal.of((BigDecimal) exp.getCalculatedValue());
+                yield (variables, cache, result) -> result.set(value);
+            }
+            case ARITHMETIC -> {
+                char symbol = children.get(0).getText().charAt(0);
+                long left = symbol == '+' || symbol == '-' ? 0 : 1;
+                DecimalOperation operation = operation(compiled, symbol, children.get(1), shared);
+                boolean scratch = needsRegister(compiled, children.get(1));
+                yield (variables, cache, result) -> {
+                    result.set(left, 0);
+                    operation.apply(variables, cache, result, scratch ? new ScaledDecimal() : null);
+                };
+            }
+            case ADDITIVE, MULTIPLICATIVE -> {
+                if (children.size() == 1) {
+                    yield decimal(compiled, children.get(0), shared);
+                }
+                DecimalClosure first = first(compiled, children.get(0), shared);
+                List<DecimalOperation> operations = new ArrayList<>();
+                boolean nested = false;
+                char preSymbol = children.get(1).getText().charAt(0);
+                for (int i = 2; i < children.size(); i++) {
+                    ExpressionDTO child = children.get(i);
+                    if (child.getType() == ExpressionType.SYMBOL) {
+                        preSymbol = child.getText().charAt(0);
+                    } else {
+                        operations.add(operation(compiled, preSymbol, child, shared));
+                        nested |= needsRegister(compiled, child);
+                    }
+                }
+                DecimalOperation[] operationArray = operations.toArray(new DecimalOperation[0]);
+                boolean scratch = nested;
+                IntermediatePolicy policy = compiled.getIntermediatePolicy();
+                boolean exact = policy.isExact();
+                yield (variables, cache, result) -> {
+                    first.apply(variables, cache, result);
+                    // one register for all operands calculated as decimals
+                    ScaledDecimal register = scratch ? new ScaledDecimal() : null;
+                    for (DecimalOperation operation : operationArray) {
+                        operation.apply(variables, cache, result, register);
+                    }
+                    if (!exact) {
+                        result.round(policy);
+                    }
+                };
+            }
+            case CONDITIONAL -> {
+                Closure condition = compile(compiled, children.get(0), shared);
+                DecimalClosure then = decimal(compiled, children.get(1), shared);
+                DecimalClosure otherwise = decimal(compiled, children.get(2), shared);
+                String text = exp.getText();
+                yield (variables, cache, result) -> {
+                    if (ConditionalCalculator.condition(condition.apply(variables, cache), text)) {
+                        then.apply(variables, cache, result);
+                    } else {
+                        otherwise.apply(variables, cache, result);
+                    }
+                };
+            }
+            default -> decimal(compiled, children.get(0), shared);
+        };
+    }
+
+    // the first operand of a chain, any other value is converted when it is operated on, as the interpreter does
+    private static DecimalClosure first(CompiledExpression compiled, ExpressionDTO exp, boolean[] shared) {
+        if (isDecimal(compiled, exp)) {
+            return decimal(compiled, exp, shared);
+        }
+        Closure value = compile(compiled, exp, shared);
+        return (variables, cache, result) -> {
+            Object operand = value.apply(variables, cache);
+            if (operand instanceof BigDecimal decimal) {
+                result.set(decimal);
+            } else {
+                result.setValue(operand);
+            }
+        };
+    }
+
+    private static DecimalOperation operation(CompiledExpression compiled, char symbol,
+            ExpressionDTO exp, boolean[] shared) {
+        int defaultScale = compiled.getDefaultScale();
+        RoundingMode defaultRoundingMode = compiled.getDefaultRoundingMode();
+        ScaledDecimal constant = constantDecimal(compiled, exp);
+        if (constant != null) {
+            return (variables, cache, result, scratch) -> result.apply(symbol, constant, defaultScale, defaultRoundingMode);
+        }
+        if (isDecimal(compiled, exp)) {
+            DecimalClosure operand = decimal(compiled, exp, shared);
+            return (variables, cache, result, scratch) -> {
+                operand.apply(variables, cache, scratch);
+                result.apply(symbol, scratch, defaultScale, defaultRoundingMode);
+            };
+        }
+        Closure operand = compile(compiled, exp, shared);
+        return (variables, cache, result, scratch) -> result.apply(symbol, operand.apply(variables, cache),
+                defaultScale, defaultRoundingMode);
+    }
+
+    // the value of a number node, it is only read
+    private static ScaledDecimal constantDecimal(CompiledExpression compiled, ExpressionDTO exp) {
+        boolean constant = (exp.getType() == ExpressionType.NUMBER || exp.getType() == ExpressionType.CONSTANT)
+                && isDecimal(compiled, exp);
+        return constant ? ScaledDecimal.of((BigDecimal) exp.getCalculatedValue()) : null;
+    }
+
+    private static boolean needsRegister(CompiledExpression compiled, ExpressionDTO exp) {
+        return isDecimal(compiled, exp) && constantDecimal(compiled, exp) == null;
+    }
+
+    private static DecimalValue decimalValue(CompiledExpression compiled, ExpressionDTO exp, boolean[] shared) {
+        ScaledDecimal constant = constantDecimal(compiled, exp);
+        if (constant != null) {
+            return (variables, cache) -> constant;
+        }
+        DecimalClosure closure = decimal(compiled, exp, shared);
+        return (variables, cache) -> {
+            ScaledDecimal result = new ScaledDecimal();
+            closure.apply(variables, cache, result);
+            return result;
+        };
+    }
+
+    private static Closure decimalRelational(CompiledExpression compiled, ExpressionDTO exp, boolean[] shared) {
+        List<ExpressionDTO> children = exp.getChildren();
+        IntPredicate predicate = switch (children.get(1).getText()) {
+            case "<" -> r -> r < 0;
+            case ">" -> r -> r > 0;
+            case "<=" -> r -> r <= 0;
+            case ">=" -> r -> r >= 0;
+            default -> throw new IllegalArgumentException(exp.getText());
+        };
+        DecimalValue left = decimalValue(compiled, children.get(0), shared);
+        DecimalValue right = decimalValue(compiled, children.get(2), shared);
+        return (variables, cache) -> predicate.test(left.apply(variables, cache).compareTo(right.apply(variables, cache)));
+    }
+
+    private static Closure constant(Object value) {
+        return (variables, cache) -> value;
+    }
+
+    private static Closure chain(CompiledExpression compiled, ExpressionDTO exp, boolean[] shared) {
+        List<ExpressionDTO> children = exp.getChildren();
+        Closure first = compile(compiled, children.get(0), shared);
+        if (children.size() == 1) {
+            return first;
+        }
+        List<Operator> operators = new ArrayList<>();
+        List<Closure> operands = new ArrayList<>();
+        String preSymbol = children.get(1).getText();
+        for (int i = 2; i < children.size(); i++) {
+            ExpressionDTO child = children.get(i);
+            if (child.getType() == ExpressionType.SYMBOL) {
+                preSymbol = child.getText();
+            } else {
+                operators.add(operator(compiled, preSymbol));
+                operands.add(compile(compiled, child, shared));
+            }
+        }
+        IntermediatePolicy policy = compiled.getIntermediatePolicy();
+        if (operands.size() == 1) {
+            Operator operator = operators.get(0);
+            Closure operand = operands.get(0);
+            return (variables, cache) -> policy.apply(
+                    operator.apply(first.apply(variables, cache), operand.apply(variables, cache)));
+        }
+        Operator[] operatorArray = operators.toArray(new Operator[0]);
+        Closure[] operandArray = operands.toArray(new Closure[0]);
+        return (variables, cache) -> {
+            Object result = first.apply(variables, cache);
+            for (int i = 0; i < operandArray.length; i++) {
+                result = operatorArray[i].apply(result, operandArray[i].apply(variables, cache));
+            }
+            return policy.apply((BigDecimal) result);
+        };
+    }
+
+    private static Operator operator(CompiledExpression compiled, String symbol) {
+        int defaultScale = compiled.getDefaultScale();
+        RoundingMode defaultRoundingMode = compiled.getDefaultRoundingMode();
+        MathContext mathContext = compiled.getMathContext();
+        return switch (symbol) {
+            case "+" -> (left, right) -> ArithmeticCalculator.add(left, right, mathContext);
+            case "-" -> (left, right) -> ArithmeticCalculator.subtract(left, right, mathContext);
+            case "*" -> (left, right) -> ArithmeticCalculator.multiply(left, right, mathContext);
+            case "/" -> (left, right) -> ArithmeticCalculator.divide(left, right,
+                    defaultScale, defaultRoundingMode, mathContext);
+            default -> throw new IllegalArgumentException("unsupport Symbol " + symbol);
+        };
+    }
+
+    private static Closure invocation(CompiledExpression compiled, ExpressionDTO exp, boolean[] shared) {
+        List<ExpressionDTO> children = exp.getChildren();
+        String methodName = children.get(0).getText();
+        AbacusMethod method = MethodInvocationCalculator.getMethod(methodName);
+        Closure[] args = new Closure[children.size() - 1];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = compile(compiled, children.get(i + 1), shared);
+        }
+        return (variables, cache) -> {
+            // an unknown method throws MethodNotFoundException when it is reached, like the interpreter does
+            AbacusMethod abacusMethod = method != null ? method : MethodInvocationCalculator.requireMethod(methodName);
+            Object[] values = null;
+            if (args.length > 0) {
+                values = new Object[args.length];
+                for (int i = 0; i < args.length; i++) {
+                    values[i] = args[i].apply(variables, cache);
+                }
+            }
+            return abacusMethod.execute(values);
+        };
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+import java.util.Arrays;
+
+/**
+ * Growable bytecode buffer of one method (or a relocatable piece of one), tracks the operand stack depth.
+ * Branch offsets are relative, so a piece can be appended to any other piece.
+ */
+final class CodeBuilder {
+
+    static final int ACONST_NULL = 0x01;
+    static final int ICONST_0 = 0x03;
+    static final int ICONST_1 = 0x04;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC_W = 0x13;
+    static final int ALOAD_0 = 0x2a;
+    static final int ALOAD_1 = 0x2b;
+    static final int ALOAD_2 = 0x2c;
+    static final int ALOAD_3 = 0x2d;
+    static final int AALOAD = 0x32;
+    static final int AASTORE = 0x53;
+    static final int POP = 0x57;
+    static final int DUP = 0x59;
+    static final int SWAP = 0x5f;
+    static final int IXOR = 0x82;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IFLT = 0x9b;
+    static final int IFGE = 0x9c;
+    static final int IFGT = 0x9d;
+    static final int IFLE = 0x9e;
+    static final int GOTO = 0xa7;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int GETSTATIC = 0xb2;
+    static final int GETFIELD = 0xb4;
+    static final int PUTFIELD = 0xb5;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int INVOKEINTERFACE = 0xb9;
+    static final int ANEWARRAY = 0xbd;
+    static final int CHECKCAST = 0xc0;
+    static final int IFNONNULL = 0xc7;
+
+    private byte[] code = new byte[32];
+    private int length;
+    private int stack;
+    private int maxStack;
+
+    int length() {
+        return length;
+    }
+
+    int stack() {
+        return stack;
+    }
+
+    int maxStack() {
+        return maxStack;
+    }
+
+    void setStack(int stack) {
+        this.stack = stack;
+    }
+
+    void insn(int opcode, int stackDelta) {
+        write(opcode);
+        adjust(stackDelta);
+    }
+
+    void u1Insn(int opcode, int operand, int stackDelta) {
+        write(opcode);
+        write(operand);
+        adjust(stackDelta);
+    }
+
+    void u2Insn(int opcode, int operand, int stackDelta) {
+        write(opcode);
+        write(operand >> 8);
+        write(operand);
+        adjust(stackDelta);
+    }
+
+    void invokeInterface(int methodRef, int argCount, int stackDelta) {
+        u2Insn(INVOKEINTERFACE, methodRef, stackDelta);
+        write(argCount + 1);
+        write(0);
+    }
+
+    int jump(int opcode, int stackDelta) {
+        int position = length;
+        u2Insn(opcode, 0, stackDelta);
+        return position;
+    }
+
+    void patch(int jumpPosition) {
+        int offset = length - jumpPosition;
+        if (offset > Short.MAX_VALUE) {
+            throw new IllegalStateException("branch offset too large " + offset);
+        }
+        code[jumpPosition + 1] = (byte) (offset >> 8);
+        code[jumpPosition + 2] = (byte) offset;
+    }
+
+    void append(CodeBuilder other) {
+        ensure(other.length);
+        System.arraycopy(other.code, 0, code, length, other.length);
+        length += other.length;
+        maxStack = Math.max(maxStack, stack + other.maxStack);
+        stack += other.stack;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(code, length);
+    }
+
+    private void adjust(int stackDelta) {
+        stack += stackDelta;
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    private void write(int b) {
+        ensure(1);
+        code[length++] = (byte) b;
+    }
+
+    private void ensure(int size) {
+        if (length + size > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, length + size));
+        }
+    }
+
+}
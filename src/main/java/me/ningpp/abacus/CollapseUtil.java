@@ -17,7 +17,9 @@ package me.ningpp.abacus;
 
 import org.apache.commons.collections4.CollectionUtils;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 
 public final class CollapseUtil {
@@ -36,36 +38,67 @@ public final class CollapseUtil {
         return results;
     }
 
+    // parentExp is kept for compatibility, the result doesn't depend on it any more;
+    // an explicit stack instead of recursion, deeply nested formulas can't overflow the thread stack
     public static ExpressionDTO collapse(ExpressionDTO exp, ExpressionDTO parentExp) {
-        if (CollectionUtils.isEmpty(exp.getChildren())) {
-            return exp;
+        ExpressionDTO root = skipPassThrough(exp);
+        if (CollectionUtils.isEmpty(root.getChildren())) {
+            return root;
         }
-
-        int childCount = exp.getChildren().size();
-        if (childCount == 1) {
-            if (parentExp != null) {
-                if (exp.getType() != ExpressionType.PARENTHESIS) {
-                    return collapse(exp.getChildren().get(0), parentExp);
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame(root));
+        while (true) {
+            Frame frame = stack.peek();
+            if (frame.next < frame.exp.getChildren().size()) {
+                ExpressionDTO child = skipPassThrough(frame.exp.getChildren().get(frame.next++));
+                if (CollectionUtils.isEmpty(child.getChildren())) {
+                    frame.collapsedChildren.add(child);
+                } else {
+                    stack.push(new Frame(child));
                 }
-            } else {
-                return collapse(exp.getChildren().get(0), exp);
+                continue;
+            }
+            stack.pop();
+            ExpressionDTO collapsed = frame.finish();
+            if (stack.isEmpty()) {
+                return collapsed;
             }
+            stack.peek().collapsedChildren.add(collapsed);
         }
+    }
 
-        List<ExpressionDTO> collapsedChildren = new ArrayList<>();
-        for (ExpressionDTO child : exp.getChildren()) {
-            collapsedChildren.add(collapse(child, exp));
+    // a node with a single child is replaced by it, parentheses are kept (at the root too,
+    // so collapsing a collapsed tree changes nothing)
+    private static ExpressionDTO skipPassThrough(ExpressionDTO exp) {
+        while (exp.getChildren() != null && exp.getChildren().size() == 1
+                && exp.getType() != ExpressionType.PARENTHESIS) {
+            exp = exp.getChildren().get(0);
         }
+        return exp;
+    }
+
+    private static final class Frame {
+        private final ExpressionDTO exp;
+        private final List<ExpressionDTO> collapsedChildren;
+        private int next;
 
-        if (exp.getType() == ExpressionType.PARENTHESIS
-                && collapsedChildren.size() == 1) {
-            if (collapsedChildren.get(0).getType() == ExpressionType.PARENTHESIS) {
-                return new ExpressionDTO(collapsedChildren.get(0).getCalculatedValue(), collapsedChildren.get(0).getText(), exp.getType(), collapsedChildren.get(0).getChildren());
-            } else if (collapsedChildren.get(0).getType() == ExpressionType.VARIABLE
-                        || collapsedChildren.get(0).getType() == ExpressionType.NUMBER) {
-                return new ExpressionDTO(collapsedChildren.get(0).getCalculatedValue(), collapsedChildren.get(0).getText(), collapsedChildren.get(0).getType(), collapsedChildren.get(0).getChildren());
+        private Frame(ExpressionDTO exp) {
+            this.exp = exp;
+            this.collapsedChildren = new ArrayList<>(exp.getChildren().size());
+        }
+
+        private ExpressionDTO finish() {
+            if (exp.getType() == ExpressionType.PARENTHESIS
+                    && collapsedChildren.size() == 1) {
+                if (collapsedChildren.get(0).getType() == ExpressionType.PARENTHESIS) {
+                    return collapsedChildren.get(0).copy(collapsedChildren.get(0).getCalculatedValue(), exp.getType(), collapsedChildren.get(0).getChildren());
+                } else if (collapsedChildren.get(0).getType() == ExpressionType.VARIABLE
+                            || collapsedChildren.get(0).getType() == ExpressionType.NUMBER) {
+                    return collapsedChildren.get(0).copy(collapsedChildren.get(0).getCalculatedValue(), collapsedChildren.get(0).getType(), collapsedChildren.get(0).getChildren());
+                }
             }
+            return exp.copy(exp.getCalculatedValue(), exp.getType(), collapsedChildren);
         }
-        return new ExpressionDTO(exp.getCalculatedValue(), exp.getText(), exp.getType(), collapsedChildren);
     }
+
 }
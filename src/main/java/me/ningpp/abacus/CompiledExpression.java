@@ -0,0 +1,335 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+import me.ningpp.abacus.calculator.MethodInvocationCalculator;
+import me.ningpp.abacus.methods.AbacusMethod;
+import org.apache.commons.collections4.CollectionUtils;
+
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A collapsed expression that is ready to be calculated, built once by {@link AbacusUtil#compile}.
+ * The expression tree is a private copy that is never modified after construction, so one instance
+ * can be calculated from many threads at the same time.
+ * Structurally identical subtrees are shared in the copy, so each of them is calculated once per call.
+ * Every distinct variable gets a slot, see {@link #getVariableNames()} and {@link #evaluate(Object[])}.
+ * Calculations start in the interpreter, hot instances are recompiled in the background as their
+ * {@link TierPolicy} says and the faster backend is swapped in without the caller noticing.
+ * Trees deeper than {@link #MAX_PROMOTED_DEPTH} are never promoted.
+ * In {@link NumericMode#DOUBLE} it is compiled by {@link DoubleCompiler} right away and never promoted.
+ */
+public final class CompiledExpression implements ExpressionExecutor {
+
+    // the backends compile and calculate recursively, deeper trees stay in the interpreter
+    static final int MAX_PROMOTED_DEPTH = 512;
+
+    private final List<ExpressionDTO> expressions;
+    private final int size;
+    private final List<String> variableNames;
+    private final int[] variableSlots;
+    private final int[] references;
+    private final int defaultScale;
+    private final RoundingMode defaultRoundingMode;
+    private final MathContext mathContext;
+    private final TierPolicy tierPolicy;
+    private final NumericMode numericMode;
+    private final IntermediatePolicy intermediatePolicy;
+    private final AtomicBoolean promoting = new AtomicBoolean();
+    // null while interpreting
+    private volatile ExpressionExecutor executor;
+    private volatile ExecutionTier tier = ExecutionTier.INTERPRETER;
+    private volatile boolean tiering;
+    // the closure backend failed, only bytecode is left to try
+    private volatile boolean closureFailed;
+    private int invocations;
+
+    CompiledExpression(List<ExpressionDTO> collapsedExpressions, int defaultScale,
+            RoundingMode defaultRoundingMode, MathContext mathContext) {
+        this(collapsedExpressions, defaultScale, defaultRoundingMode, mathContext, TierPolicy.INTERPRETER_ONLY);
+    }
+
+    CompiledExpression(List<ExpressionDTO> collapsedExpressions, int defaultScale,
+            RoundingMode defaultRoundingMode, MathContext mathContext, TierPolicy tierPolicy) {
+        this(collapsedExpressions, defaultScale, defaultRoundingMode, mathContext, tierPolicy, NumericMode.DECIMAL);
+    }
+
+    CompiledExpression(List<ExpressionDTO> collapsedExpressions, int defaultScale, RoundingMode defaultRoundingMode,
+            MathContext mathContext, TierPolicy tierPolicy, NumericMode numericMode) {
+        this(collapsedExpressions, defaultScale, defaultRoundingMode, mathContext, tierPolicy, numericMode,
+                IntermediatePolicy.EXACT);
+    }
+
+    CompiledExpression(List<ExpressionDTO> collapsedExpressions, int defaultScale, RoundingMode defaultRoundingMode,
+            MathContext mathContext, TierPolicy tierPolicy, NumericMode numericMode,
+            IntermediatePolicy intermediatePolicy) {
+        Map<NodeKey, ExpressionDTO> interned = new HashMap<>();
+        List<ExpressionDTO> copies = new ArrayList<>();
+        if (CollectionUtils.isNotEmpty(collapsedExpressions)) {
+            for (ExpressionDTO exp : collapsedExpressions) {
+                copies.add(copy(exp, interned));
+            }
+        }
+        this.expressions = List.copyOf(copies);
+        this.size = interned.size();
+
+        ExpressionDTO[] nodes = new ExpressionDTO[size];
+        for (ExpressionDTO node : interned.values()) {
+            nodes[node.getIndex()] = node;
+        }
+        List<String> names = new ArrayList<>();
+        this.variableSlots = new int[size];
+        // children are copied before their parents, so their indexes are lower
+        int[] depths = new int[size];
+        int depth = 0;
+        for (int i = 0; i < size; i++) {
+            if (nodes[i].getChildren() != null) {
+                for (ExpressionDTO child : nodes[i].getChildren()) {
+                    depths[i] = Math.max(depths[i], depths[child.getIndex()]);
+                }
+            }
+            depth = Math.max(depth, ++depths[i]);
+            if (nodes[i].getType() == ExpressionType.VARIABLE) {
+                // variable leaves are interned by name, so every node here is a new variable
+                variableSlots[i] = names.size();
+                names.add(nodes[i].getText());
+            } else {
+                variableSlots[i] = -1;
+            }
+        }
+        this.variableNames = List.copyOf(names);
+        this.references = new int[size];
+        for (ExpressionDTO exp : expressions) {
+            countReferences(exp);
+        }
+        this.defaultScale = defaultScale;
+        this.defaultRoundingMode = defaultRoundingMode;
+        this.mathContext = mathContext;
+        this.tierPolicy = tierPolicy;
+        this.numericMode = numericMode;
+        this.intermediatePolicy = intermediatePolicy;
+        if (numericMode == NumericMode.DOUBLE) {
+            this.executor = DoubleCompiler.compile(this);
+            this.tier = ExecutionTier.CLOSURE;
+            this.tiering = false;
+        } else {
+            this.tiering = depth <= MAX_PROMOTED_DEPTH && !tierPolicy.isFinal(ExecutionTier.INTERPRETER);
+        }
+    }
+
+    private static ExpressionDTO copy(ExpressionDTO exp, Map<NodeKey, ExpressionDTO> interned) {
+        List<ExpressionDTO> children = null;
+        if (exp.getChildren() != null) {
+            List<ExpressionDTO> copiedChildren = new ArrayList<>(exp.getChildren().size());
+            for (ExpressionDTO child : exp.getChildren()) {
+                copiedChildren.add(copy(child, interned));
+            }
+            children = List.copyOf(copiedChildren);
+        }
+        // children are interned already, so comparing them by identity is enough
+        NodeKey key = new NodeKey(exp.getType(), CollectionUtils.isEmpty(children) ? exp.getText() : null,
+                exp.getCalculatedValue(), children, isImpure(exp) ? interned.size() : -1);
+        ExpressionDTO copied = interned.get(key);
+        if (copied == null) {
+            copied = exp.copy(exp.getCalculatedValue(), exp.getType(), children);
+            copied.setIndex(interned.size());
+            interned.put(key, copied);
+        }
+        return copied;
+    }
+
+    private void countReferences(ExpressionDTO exp) {
+        if (references[exp.getIndex()]++ == 0 && exp.getChildren() != null) {
+            for (ExpressionDTO child : exp.getChildren()) {
+                countReferences(child);
+            }
+        }
+    }
+
+    private static boolean isImpure(ExpressionDTO exp) {
+        if (exp.getType() != ExpressionType.METHOD_INVOCATION) {
+            return false;
+        }
+        AbacusMethod method = MethodInvocationCalculator.getMethod(exp.getChildren().get(0).getText());
+        return method == null || !method.isPure();
+    }
+
+    private record NodeKey(ExpressionType type, String text, Object value, List<ExpressionDTO> children, int unique) {
+    }
+
+    public Object calculate(Map<String, Object> context) {
+        ExpressionExecutor current = executor;
+        if (tiering) {
+            countInvocation();
+        }
+        return current == null ? calculateFrame(context).getResult() : current.execute(bindVariables(context));
+    }
+
+    public CalculateFrame calculateFrame(Map<String, Object> context) {
+        return calculate(new CalculateFrame(context, null, variableSlots,
+                defaultScale, defaultRoundingMode, mathContext, intermediatePolicy, size));
+    }
+
+    public Object evaluate(Object[] variables) {
+        checkVariables(variables);
+        ExpressionExecutor current = executor;
+        if (tiering) {
+            countInvocation();
+        }
+        return current == null ? calculate(new CalculateFrame(null, variables, variableSlots,
+                defaultScale, defaultRoundingMode, mathContext, intermediatePolicy, size)).getResult()
+                : current.execute(variables);
+    }
+
+    @Override
+    public Object execute(Object[] variables) {
+        return evaluate(variables);
+    }
+
+    // frames are only produced by the interpreter, whatever the current tier (and numeric mode) is
+    public CalculateFrame evaluateFrame(Object[] variables) {
+        checkVariables(variables);
+        return calculate(new CalculateFrame(null, variables, variableSlots,
+                defaultScale, defaultRoundingMode, mathContext, intermediatePolicy, size));
+    }
+
+    private void checkVariables(Object[] variables) {
+        if (variables == null || variables.length < variableNames.size()) {
+            throw new IllegalArgumentException("expect " + variableNames.size() + " variables " + variableNames
+                    + ", but " + (variables == null ? 0 : variables.length));
+        }
+    }
+
+    private void countInvocation() {
+        // racy on purpose, a lost update only delays the promotion a little
+        int count = invocations + 1;
+        if (count > 0) {
+            invocations = count;
+        }
+        ExecutionTier next = tierPolicy.nextTier(tier, count);
+        if (next == ExecutionTier.CLOSURE && closureFailed) {
+            return;
+        }
+        if (next != null && promoting.compareAndSet(false, true)) {
+            try {
+                tierPolicy.getExecutor().execute(() -> promote(next));
+            } catch (RuntimeException e) {
+                // the executor refused the task, stay in the current tier
+                tiering = false;
+                promoting.set(false);
+            }
+        }
+    }
+
+    private void promote(ExecutionTier next) {
+        try {
+            executor = next == ExecutionTier.BYTECODE ? BytecodeCompiler.compile(this) : ClosureCompiler.compile(this);
+            tier = next;
+            tiering = !tierPolicy.isFinal(next);
+        } catch (RuntimeException | LinkageError | StackOverflowError e) {
+            // the backend can't handle this expression, keep calculating in the current tier
+            if (next == ExecutionTier.CLOSURE && !tierPolicy.isFinal(ExecutionTier.CLOSURE)) {
+                closureFailed = true;
+            } else {
+                tiering = false;
+            }
+        } finally {
+            promoting.set(false);
+        }
+    }
+
+    public ExecutionTier getTier() {
+        return tier;
+    }
+
+    public int getInvocationCount() {
+        return invocations;
+    }
+
+    public TierPolicy getTierPolicy() {
+        return tierPolicy;
+    }
+
+    public NumericMode getNumericMode() {
+        return numericMode;
+    }
+
+    public Object[] bindVariables(Map<String, Object> context) {
+        Object[] variables = new Object[variableNames.size()];
+        for (int i = 0; i < variables.length; i++) {
+            variables[i] = context.get(variableNames.get(i));
+        }
+        return variables;
+    }
+
+    private CalculateFrame calculate(CalculateFrame frame) {
+        for (ExpressionDTO exp : expressions) {
+            AbacusUtil.calculateOne(exp, frame);
+        }
+        if (!expressions.isEmpty()) {
+            frame.setResult(frame.getValue(expressions.get(0)));
+        }
+        return frame;
+    }
+
+    public int getNodeCount() {
+        return size;
+    }
+
+    List<ExpressionDTO> getExpressions() {
+        return expressions;
+    }
+
+    int getVariableSlot(ExpressionDTO variable) {
+        return variableSlots[variable.getIndex()];
+    }
+
+    // a non-leaf node referenced more than once, backends cache its value per call
+    boolean isShared(ExpressionDTO exp) {
+        return references[exp.getIndex()] > 1 && CollectionUtils.isNotEmpty(exp.getChildren());
+    }
+
+    public List<String> getVariableNames() {
+        return variableNames;
+    }
+
+    public int getVariableSlot(String variableName) {
+        return variableNames.indexOf(variableName);
+    }
+
+    public int getDefaultScale() {
+        return defaultScale;
+    }
+
+    public RoundingMode getDefaultRoundingMode() {
+        return defaultRoundingMode;
+    }
+
+    public MathContext getMathContext() {
+        return mathContext;
+    }
+
+    public IntermediatePolicy getIntermediatePolicy() {
+        return intermediatePolicy;
+    }
+
+}
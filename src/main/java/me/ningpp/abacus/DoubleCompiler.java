@@ -0,0 +1,485 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+import me.ningpp.abacus.calculator.ArithmeticCalculator;
+import me.ningpp.abacus.calculator.ConditionalAndCalculator;
+import me.ningpp.abacus.calculator.ConditionalCalculator;
+import me.ningpp.abacus.calculator.MethodInvocationCalculator;
+import me.ningpp.abacus.calculator.RelationalCalculator;
+import me.ningpp.abacus.methods.AbacusMethod;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Compiles a {@link CompiledExpression} for {@link NumericMode#DOUBLE} into a tree of closures like
+ * {@link ClosureCompiler}. A type inference pass first finds the nodes that are always numbers (arithmetic)
+ * or always booleans (comparisons, {@code &&} and {@code ||}), those are compiled to closures that return
+ * primitive doubles and booleans. Everything else (variables, literals, methods) is an object, it is converted
+ * to a double where arithmetic needs one, and a double is boxed only where an object is needed.
+ * Shared subtrees are calculated once per call, as in the other tiers.
+ */
+public final class DoubleCompiler {
+
+    private enum Type {
+        DOUBLE,
+        BOOLEAN,
+        OBJECT
+    }
+
+    @FunctionalInterface
+    private interface Closure {
+        Object apply(Variables variables);
+    }
+
+    @FunctionalInterface
+    private interface DoubleClosure {
+        double apply(Variables variables);
+    }
+
+    @FunctionalInterface
+    private interface BooleanClosure {
+        boolean apply(Variables variables);
+    }
+
+    private final CompiledExpression compiled;
+    // inferred once per node
+    private final Type[] types;
+    // a shared subtree was compiled, its value is cached per call like ClosureCompiler does
+    private boolean shared;
+
+    private DoubleCompiler(CompiledExpression compiled) {
+        this.compiled = compiled;
+        this.types = new Type[compiled.getNodeCount()];
+    }
+
+    public static ExpressionExecutor compile(CompiledExpression compiled) {
+        List<ExpressionDTO> expressions = compiled.getExpressions();
+        if (expressions.isEmpty()) {
+            return variables -> null;
+        }
+        DoubleCompiler compiler = new DoubleCompiler(compiled);
+        Closure[] roots = new Closure[expressions.size()];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = compiler.object(expressions.get(i));
+        }
+        int cacheSize = compiler.shared ? compiled.getNodeCount() : 0;
+        if (roots.length == 1) {
+            Closure root = roots[0];
+            return variables -> root.apply(new Variables(variables, cacheSize));
+        }
+        return values -> {
+            Variables variables = new Variables(values, cacheSize);
+            Object result = roots[0].apply(variables);
+            for (int i = 1; i < roots.length; i++) {
+                roots[i].apply(variables);
+            }
+            return result;
+        };
+    }
+
+    private Type type(ExpressionDTO exp) {
+        Type type = types[exp.getIndex()];
+        if (type == null) {
+            type = infer(exp);
+            types[exp.getIndex()] = type;
+        }
+        return type;
+    }
+
+    private Type infer(ExpressionDTO exp) {
+        List<ExpressionDTO> children = exp.getChildren();
+        return switch (exp.getType()) {
+            case NUMBER -> Type.DOUBLE;
+            case CONSTANT -> exp.getCalculatedValue() instanceof BigDecimal ? Type.DOUBLE
+                    : exp.getCalculatedValue() instanceof Boolean ? Type.BOOLEAN : Type.OBJECT;
+            // arithmetic converts its operands or fails
+            case ARITHMETIC -> Type.DOUBLE;
+            case ADDITIVE, MULTIPLICATIVE -> children.size() == 1 ? type(children.get(0)) : Type.DOUBLE;
+            case RELATIONAL, EQUALITY, CONDITIONAL_AND, CONDITIONAL_OR ->
+                    children.size() == 1 ? type(children.get(0)) : Type.BOOLEAN;
+            case CONDITIONAL -> type(children.get(1)) == type(children.get(2)) ? type(children.get(1)) : Type.OBJECT;
+            case PARENTHESIS, EXPRESSION, PRIMARY, UNARY,
+                    CONDITIONAL_CONDITION, CONDITIONAL_THEN, CONDITIONAL_ELSE -> type(children.get(0));
+            case VARIABLE, STRING_LITERAL, SYMBOL, METHOD_INVOCATION -> Type.OBJECT;
+        };
+    }
+
+    // a node whose type is DOUBLE
+    private DoubleClosure doubleNode(ExpressionDTO exp) {
+        DoubleClosure closure = compileDouble(exp);
+        if (!compiled.isShared(exp)) {
+            return closure;
+        }
+        shared = true;
+        int index = exp.getIndex();
+        return variables -> {
+            if (!variables.cached[index]) {
+                variables.numbers[index] = closure.apply(variables);
+                variables.cached[index] = true;
+            }
+            return variables.numbers[index];
+        };
+    }
+
+    private DoubleClosure compileDouble(ExpressionDTO exp) {
+        List<ExpressionDTO> children = exp.getChildren();
+        return switch (exp.getType()) {
+            case NUMBER, CONSTANT -> {
+                double value = ((BigDecimal) exp.getCalculatedValue()).doubleValue();
+                yield variables -> value;
+            }
+            case ADDITIVE, MULTIPLICATIVE -> {
+                if (children.size() == 1) {
+                    yield doubleNode(children.get(0));
+                }
+                yield chain(children);
+            }
+            case ARITHMETIC -> {
+                String symbol = children.get(0).getText();
+                DoubleClosure operand = toDouble(children.get(1), "right");
+                yield switch (symbol) {
+                    case "+", "*" -> operand;
+                    // 0 - x, not -x, there is no negative zero in BigDecimal
+                    case "-" -> variables -> 0.0 - operand.apply(variables);
+                    default -> operator(symbol, variables -> 1.0, operand);
+                };
+            }
+            case CONDITIONAL -> {
+                BooleanClosure condition = toBoolean(children.get(0),
+                        value -> ConditionalCalculator.condition(value, exp.getText()));
+                DoubleClosure then = doubleNode(children.get(1));
+                DoubleClosure otherwise = doubleNode(children.get(2));
+                yield variables -> condition.apply(variables) ? then.apply(variables) : otherwise.apply(variables);
+            }
+            default -> doubleNode(children.get(0));
+        };
+    }
+
+    // the operands of a chain in one loop, a closure per operator would nest as deep as the chain is long
+    private DoubleClosure chain(List<ExpressionDTO> children) {
+        DoubleClosure first = toDouble(children.get(0), "left");
+        List<DoubleClosure> operands = new ArrayList<>();
+        StringBuilder symbols = new StringBuilder();
+        char preSymbol = children.get(1).getText().charAt(0);
+        for (int i = 2; i < children.size(); i++) {
+            ExpressionDTO child = children.get(i);
+            if (child.getType() == ExpressionType.SYMBOL) {
+                preSymbol = child.getText().charAt(0);
+            } else {
+                symbols.append(preSymbol);
+                operands.add(toDouble(child, "right"));
+            }
+        }
+        if (operands.size() == 1) {
+            return operator(symbols.toString(), first, operands.get(0));
+        }
+        DoubleClosure[] operandArray = operands.toArray(new DoubleClosure[0]);
+        char[] symbolArray = symbols.toString().toCharArray();
+        return variables -> {
+            double result = first.apply(variables);
+            for (int i = 0; i < operandArray.length; i++) {
+                double operand = operandArray[i].apply(variables);
+                result = switch (symbolArray[i]) {
+                    case '+' -> result + operand;
+                    case '-' -> result - operand;
+                    case '*' -> result * operand;
+                    default -> divide(result, operand);
+                };
+            }
+            return result;
+        };
+    }
+
+    private static DoubleClosure operator(String symbol, DoubleClosure left, DoubleClosure right) {
+        return switch (symbol) {
+            case "+" -> variables -> left.apply(variables) + right.apply(variables);
+            case "-" -> variables -> left.apply(variables) - right.apply(variables);
+            case "*" -> variables -> left.apply(variables) * right.apply(variables);
+            case "/" -> variables -> divide(left.apply(variables), right.apply(variables));
+            default -> throw new IllegalArgumentException("unsupport Symbol " + symbol);
+        };
+    }
+
+    private static double divide(double left, double right) {
+        if (right == 0.0) {
+            // as BigDecimal.divide says it
+            throw new ArithmeticException(left == 0.0 ? "Division undefined" : "Division by zero");
+        }
+        return left / right;
+    }
+
+    // a node whose type is BOOLEAN
+    private BooleanClosure booleanNode(ExpressionDTO exp) {
+        BooleanClosure closure = compileBoolean(exp);
+        if (!compiled.isShared(exp)) {
+            return closure;
+        }
+        shared = true;
+        int index = exp.getIndex();
+        return variables -> {
+            if (!variables.cached[index]) {
+                variables.cache[index] = closure.apply(variables);
+                variables.cached[index] = true;
+            }
+            return (Boolean) variables.cache[index];
+        };
+    }
+
+    private BooleanClosure compileBoolean(ExpressionDTO exp) {
+        List<ExpressionDTO> children = exp.getChildren();
+        if (children == null) {
+            boolean value = (Boolean) exp.getCalculatedValue();
+            return variables -> value;
+        }
+        if (children.size() == 1) {
+            return booleanNode(children.get(0));
+        }
+        ExpressionDTO leftExp = children.get(0);
+        ExpressionDTO rightExp = children.get(children.size() - 1);
+        return switch (exp.getType()) {
+            case RELATIONAL -> relational(children.get(1).getText(), leftExp, rightExp);
+            case EQUALITY -> {
+                BooleanClosure equals = equality(leftExp, rightExp);
+                yield "==".equals(children.get(1).getText()) ? equals : variables -> !equals.apply(variables);
+            }
+            case CONDITIONAL_AND -> {
+                BooleanClosure left = toBoolean(leftExp, ConditionalAndCalculator::leftBoolean);
+                BooleanClosure right = toBoolean(rightExp, ConditionalAndCalculator::rightBoolean);
+                yield variables -> left.apply(variables) && right.apply(variables);
+            }
+            case CONDITIONAL_OR -> {
+                BooleanClosure left = toBoolean(leftExp, ConditionalAndCalculator::leftBoolean);
+                BooleanClosure right = toBoolean(rightExp, ConditionalAndCalculator::rightBoolean);
+                yield variables -> left.apply(variables) || right.apply(variables);
+            }
+            case CONDITIONAL -> {
+                BooleanClosure condition = toBoolean(children.get(0),
+                        value -> ConditionalCalculator.condition(value, exp.getText()));
+                BooleanClosure then = booleanNode(children.get(1));
+                BooleanClosure otherwise = booleanNode(children.get(2));
+                yield variables -> condition.apply(variables) ? then.apply(variables) : otherwise.apply(variables);
+            }
+            default -> booleanNode(children.get(0));
+        };
+    }
+
+    // numbers when either side is one, the other side is converted like an operand of arithmetic
+    private BooleanClosure relational(String symbol, ExpressionDTO leftExp, ExpressionDTO rightExp) {
+        if (type(leftExp) == Type.DOUBLE || type(rightExp) == Type.DOUBLE) {
+            DoubleClosure left = toDouble(leftExp, "left");
+            DoubleClosure right = toDouble(rightExp, "right");
+            return switch (symbol) {
+                case "<" -> variables -> left.apply(variables) < right.apply(variables);
+                case ">" -> variables -> left.apply(variables) > right.apply(variables);
+                case "<=" -> variables -> left.apply(variables) <= right.apply(variables);
+                case ">=" -> variables -> left.apply(variables) >= right.apply(variables);
+                default -> throw new IllegalArgumentException(symbol);
+            };
+        }
+        Closure left = object(leftExp);
+        Closure right = object(rightExp);
+        return switch (symbol) {
+            case "<" -> variables -> RelationalCalculator.compare(left.apply(variables), right.apply(variables)) < 0;
+            case ">" -> variables -> RelationalCalculator.compare(left.apply(variables), right.apply(variables)) > 0;
+            case "<=" -> variables -> RelationalCalculator.compare(left.apply(variables), right.apply(variables)) <= 0;
+            case ">=" -> variables -> RelationalCalculator.compare(left.apply(variables), right.apply(variables)) >= 0;
+            default -> throw new IllegalArgumentException(symbol);
+        };
+    }
+
+    private BooleanClosure equality(ExpressionDTO leftExp, ExpressionDTO rightExp) {
+        Type leftType = type(leftExp);
+        Type rightType = type(rightExp);
+        if (leftType == Type.DOUBLE && rightType == Type.DOUBLE) {
+            DoubleClosure left = doubleNode(leftExp);
+            DoubleClosure right = doubleNode(rightExp);
+            return variables -> left.apply(variables) == right.apply(variables);
+        } else if (leftType == Type.BOOLEAN && rightType == Type.BOOLEAN) {
+            BooleanClosure left = booleanNode(leftExp);
+            BooleanClosure right = booleanNode(rightExp);
+            return variables -> left.apply(variables) == right.apply(variables);
+        } else if (leftType == Type.DOUBLE || rightType == Type.DOUBLE) {
+            if (leftType == Type.DOUBLE) {
+                DoubleClosure left = doubleNode(leftExp);
+                Closure right = object(rightExp);
+                return variables -> {
+                    double value = left.apply(variables);
+                    return numberEquals(value, right.apply(variables));
+                };
+            }
+            Closure left = object(leftExp);
+            DoubleClosure right = doubleNode(rightExp);
+            return variables -> {
+                Object value = left.apply(variables);
+                return numberEquals(right.apply(variables), value);
+            };
+        }
+        Closure left = object(leftExp);
+        Closure right = object(rightExp);
+        return variables -> Objects.equals(left.apply(variables), right.apply(variables));
+    }
+
+    private static boolean numberEquals(double number, Object value) {
+        return value instanceof Number && toDouble(value, "right") == number;
+    }
+
+    // any node, as the value the decimal mode would have there
+    private Closure object(ExpressionDTO exp) {
+        Closure closure = compileObject(exp);
+        // numbers and booleans are cached by their own closures
+        if (type(exp) != Type.OBJECT || !compiled.isShared(exp)) {
+            return closure;
+        }
+        shared = true;
+        int index = exp.getIndex();
+        return variables -> {
+            if (!variables.cached[index]) {
+                variables.cache[index] = closure.apply(variables);
+                variables.cached[index] = true;
+            }
+            return variables.cache[index];
+        };
+    }
+
+    private Closure compileObject(ExpressionDTO exp) {
+        List<ExpressionDTO> children = exp.getChildren();
+        switch (exp.getType()) {
+            case NUMBER, CONSTANT:
+                Object value = exp.getCalculatedValue();
+                return variables -> value;
+            case VARIABLE:
+                int slot = compiled.getVariableSlot(exp);
+                return variables -> variables.values[slot];
+            case STRING_LITERAL, SYMBOL:
+                String text = exp.getText();
+                return variables -> text;
+            case METHOD_INVOCATION:
+                return invocation(exp);
+            default:
+                break;
+        }
+        if (type(exp) == Type.DOUBLE) {
+            DoubleClosure number = doubleNode(exp);
+            return variables -> box(number.apply(variables));
+        } else if (type(exp) == Type.BOOLEAN) {
+            BooleanClosure condition = booleanNode(exp);
+            return variables -> condition.apply(variables);
+        } else if (exp.getType() == ExpressionType.CONDITIONAL) {
+            BooleanClosure condition = toBoolean(children.get(0),
+                    conditionValue -> ConditionalCalculator.condition(conditionValue, exp.getText()));
+            Closure then = object(children.get(1));
+            Closure otherwise = object(children.get(2));
+            return variables -> condition.apply(variables) ? then.apply(variables) : otherwise.apply(variables);
+        }
+        return object(children.get(0));
+    }
+
+    private Closure invocation(ExpressionDTO exp) {
+        List<ExpressionDTO> children = exp.getChildren();
+        String methodName = children.get(0).getText();
+        AbacusMethod method = MethodInvocationCalculator.getMethod(methodName);
+        Closure[] args = new Closure[children.size() - 1];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = object(children.get(i + 1));
+        }
+        return variables -> {
+            // an unknown method throws MethodNotFoundException when it is reached, like the interpreter does
+            AbacusMethod abacusMethod = method != null ? method : MethodInvocationCalculator.requireMethod(methodName);
+            Object[] values = null;
+            if (args.length > 0) {
+                values = new Object[args.length];
+                for (int i = 0; i < args.length; i++) {
+                    values[i] = args[i].apply(variables);
+                }
+            }
+            return abacusMethod.execute(values);
+        };
+    }
+
+    private DoubleClosure toDouble(ExpressionDTO exp, String side) {
+        if (type(exp) == Type.DOUBLE) {
+            return doubleNode(exp);
+        } else if (exp.getType() == ExpressionType.VARIABLE) {
+            int slot = compiled.getVariableSlot(exp);
+            return variables -> variables.toDouble(slot, side);
+        }
+        Closure value = object(exp);
+        return variables -> toDouble(value.apply(variables), side);
+    }
+
+    private BooleanClosure toBoolean(ExpressionDTO exp, Predicate<Object> check) {
+        if (type(exp) == Type.BOOLEAN) {
+            return booleanNode(exp);
+        }
+        Closure value = object(exp);
+        return variables -> check.test(value.apply(variables));
+    }
+
+    // converts a value the way ArithmeticCalculator.toDecimal does, the usual types without a detour
+    private static double toDouble(Object value, String side) {
+        if (value == null) {
+            throw new IllegalArgumentException("'" + side + "' value can't be null!");
+        } else if (value instanceof Double d) {
+            return d;
+        } else if (value instanceof BigDecimal d) {
+            return d.doubleValue();
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).doubleValue();
+        }
+        return ArithmeticCalculator.toDecimal(value).doubleValue();
+    }
+
+    // the variables of one call, each is converted to a double at most once,
+    // and the values of the shared nodes by index, each is calculated at most once
+    private static final class Variables {
+        private final Object[] values;
+        private final double[] doubles;
+        private final boolean[] converted;
+        private final boolean[] cached;
+        private final double[] numbers;
+        private final Object[] cache;
+
+        private Variables(Object[] values, int cacheSize) {
+            this.values = values;
+            this.doubles = new double[values.length];
+            this.converted = new boolean[values.length];
+            this.cached = cacheSize == 0 ? null : new boolean[cacheSize];
+            this.numbers = cacheSize == 0 ? null : new double[cacheSize];
+            this.cache = cacheSize == 0 ? null : new Object[cacheSize];
+        }
+
+        private double toDouble(int slot, String side) {
+            if (!converted[slot]) {
+                doubles[slot] = DoubleCompiler.toDouble(values[slot], side);
+                converted[slot] = true;
+            }
+            return doubles[slot];
+        }
+    }
+
+    private static BigDecimal box(double value) {
+        if (!Double.isFinite(value)) {
+            throw new ArithmeticException("result is not a finite number: " + value);
+        }
+        return BigDecimal.valueOf(value);
+    }
+
+}
@@ -20,8 +20,13 @@ import java.util.List;
 public class ExpressionDTO {
     private Object calculatedValue;
     private String text;
+    // the text can also be a span of the source, it is copied out on first use
+    private CharSequence source;
+    private int start;
+    private int stop;
     private ExpressionType type;
     private List<ExpressionDTO> children;
+    private int index = -1;
 
     public ExpressionDTO() {
     }
@@ -41,6 +46,23 @@ public class ExpressionDTO {
         this.children = children;
     }
 
+    public ExpressionDTO(CharSequence source, int start, int stop, ExpressionType type, List<ExpressionDTO> children) {
+        this.source = source;
+        this.start = start;
+        this.stop = stop;
+        this.type = type;
+        this.children = children;
+    }
+
+    // the same text (or source span) with another value, type and children
+    public ExpressionDTO copy(Object calculatedValue, ExpressionType type, List<ExpressionDTO> children) {
+        ExpressionDTO copy = new ExpressionDTO(calculatedValue, text, type, children);
+        copy.source = source;
+        copy.start = start;
+        copy.stop = stop;
+        return copy;
+    }
+
     public Object getCalculatedValue() {
         return calculatedValue;
     }
@@ -50,11 +72,30 @@ public class ExpressionDTO {
     }
 
     public String getText() {
-        return text;
+        String result = text;
+        if (result == null && source != null) {
+            // a racy but harmless cache, every thread copies out the same string
+            result = source.subSequence(start, stop).toString();
+            text = result;
+        }
+        return result;
     }
 
     public void setText(String text) {
         this.text = text;
+        this.source = null;
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getStop() {
+        return stop;
     }
 
     public ExpressionType getType() {
@@ -72,4 +113,12 @@ public class ExpressionDTO {
     public void setChildren(List<ExpressionDTO> children) {
         this.children = children;
     }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
 }
@@ -0,0 +1,27 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+/**
+ * A backend that calculates a {@link CompiledExpression}, variables are passed by slot
+ * (see {@link CompiledExpression#getVariableNames()} and {@link CompiledExpression#bindVariables}).
+ * Implementations are thread-safe.
+ */
+public interface ExpressionExecutor {
+
+    Object execute(Object[] variables);
+
+}
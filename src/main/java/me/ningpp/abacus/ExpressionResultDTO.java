@@ -19,6 +19,7 @@ import java.util.List;
 
 public class ExpressionResultDTO {
     private List<ExpressionDTO> expressions;
+    private boolean collapsed;
 
     public List<ExpressionDTO> getExpressions() {
         return expressions;
@@ -27,4 +28,12 @@ public class ExpressionResultDTO {
     public void setExpressions(List<ExpressionDTO> expressions) {
         this.expressions = expressions;
     }
+
+    public boolean isCollapsed() {
+        return collapsed;
+    }
+
+    public void setCollapsed(boolean collapsed) {
+        this.collapsed = collapsed;
+    }
 }
@@ -53,5 +53,7 @@ public enum ExpressionType {
 
     ARITHMETIC,
 
-    MULTIPLICATIVE
+    MULTIPLICATIVE,
+
+    CONSTANT
 }
@@ -0,0 +1,86 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * How the value of an additive or multiplicative chain is rounded before anything else operates on it.
+ * Without a MathContext a product carries the scales of all its factors, so long products drag dozens of
+ * digits into every later operation. {@link #EXACT} keeps all of them (the results as without a policy),
+ * {@link #maxScale} and {@link #maxPrecision} round a chain value that exceeds the cap.
+ * Only the value of a whole chain is rounded, operands within it are not, and the value of the
+ * expression itself is rounded too when it is a chain. {@link NumericMode#DOUBLE} ignores the policy.
+ */
+public final class IntermediatePolicy {
+
+    public static final IntermediatePolicy EXACT = new IntermediatePolicy(Integer.MAX_VALUE, RoundingMode.UNNECESSARY,
+            null);
+
+    private final int maxScale;
+    private final RoundingMode roundingMode;
+    // null when the precision is not capped
+    private final MathContext mathContext;
+
+    private IntermediatePolicy(int maxScale, RoundingMode roundingMode, MathContext mathContext) {
+        this.maxScale = maxScale;
+        this.roundingMode = roundingMode;
+        this.mathContext = mathContext;
+    }
+
+    public static IntermediatePolicy maxScale(int maxScale, RoundingMode roundingMode) {
+        if (roundingMode == null) {
+            throw new IllegalArgumentException("roundingMode is null");
+        }
+        return new IntermediatePolicy(maxScale, roundingMode, null);
+    }
+
+    public static IntermediatePolicy maxPrecision(MathContext mathContext) {
+        if (mathContext == null || mathContext.getPrecision() == 0) {
+            throw new IllegalArgumentException("expect a limited precision, but " + mathContext);
+        }
+        return new IntermediatePolicy(Integer.MAX_VALUE, mathContext.getRoundingMode(), mathContext);
+    }
+
+    public BigDecimal apply(BigDecimal value) {
+        if (value.scale() > maxScale) {
+            return value.setScale(maxScale, roundingMode);
+        }
+        if (mathContext != null && value.precision() > mathContext.getPrecision()) {
+            return value.round(mathContext);
+        }
+        return value;
+    }
+
+    public boolean isExact() {
+        return this == EXACT;
+    }
+
+    public int getMaxScale() {
+        return maxScale;
+    }
+
+    public RoundingMode getRoundingMode() {
+        return roundingMode;
+    }
+
+    public MathContext getMathContext() {
+        return mathContext;
+    }
+
+}
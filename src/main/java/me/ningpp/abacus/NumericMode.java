@@ -0,0 +1,49 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+/**
+ * How a {@link CompiledExpression} does its arithmetic, see {@link AbacusUtil#compile(String, int,
+ * java.math.RoundingMode, java.math.MathContext, NumericMode)}.
+ */
+public enum NumericMode {
+
+    /**
+     * Exact {@code BigDecimal} arithmetic with the scale, rounding mode and math context given when compiling.
+     */
+    DECIMAL,
+
+    /**
+     * Arithmetic on primitive {@code double}s, see {@link DoubleCompiler}, for expressions that don't need decimal
+     * exactness. It differs from {@link #DECIMAL} in these ways:
+     * <ul>
+     * <li>every +, -, * and / is rounded to the nearest double, the scale, rounding mode and math context
+     * are not used, so {@code 0.1 + 0.2} is {@code 0.30000000000000004};</li>
+     * <li>a number is converted back to {@code BigDecimal.valueOf(double)} where an object is needed: the result,
+     * method arguments and branches of a conditional that aren't both numbers. Its scale is that of the shortest
+     * decimal representation, compare results with {@code compareTo};</li>
+     * <li>{@code ==} and {@code !=} compare numbers by value, {@code 1.0 == 1.00} is true (with {@code BigDecimal}
+     * it is false), a number never equals a value that is not a {@code Number};</li>
+     * <li>{@code <}, {@code >}, {@code <=} and {@code >=} with a number on one side convert the other side
+     * to a double as arithmetic does, instead of requiring comparable types;</li>
+     * <li>a result that is not finite (an overflow) throws {@code ArithmeticException} where it is converted,
+     * division by zero throws it as with {@code BigDecimal}.</li>
+     * </ul>
+     * Variables, literals and methods are not changed, their values are converted where arithmetic needs a number.
+     */
+    DOUBLE
+
+}
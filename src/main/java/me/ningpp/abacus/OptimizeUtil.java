@@ -0,0 +1,121 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+import me.ningpp.abacus.calculator.MethodInvocationCalculator;
+import me.ningpp.abacus.methods.AbacusMethod;
+import org.apache.commons.collections4.CollectionUtils;
+
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public final class OptimizeUtil {
+
+    private OptimizeUtil() {
+    }
+
+    public static List<ExpressionDTO> optimize(List<ExpressionDTO> collapsedExpressions,
+            int defaultScale, RoundingMode defaultRoundingMode, MathContext mathContext) {
+        return optimize(collapsedExpressions, defaultScale, defaultRoundingMode, mathContext, IntermediatePolicy.EXACT);
+    }
+
+    // folded chains are rounded by the policy, as they would be when calculated
+    public static List<ExpressionDTO> optimize(List<ExpressionDTO> collapsedExpressions, int defaultScale,
+            RoundingMode defaultRoundingMode, MathContext mathContext, IntermediatePolicy intermediatePolicy) {
+        if (collapsedExpressions == null) {
+            return null;
+        }
+        List<ExpressionDTO> results = new ArrayList<>();
+        for (ExpressionDTO exp : collapsedExpressions) {
+            results.add(optimize(exp, defaultScale, defaultRoundingMode, mathContext, intermediatePolicy));
+        }
+        return results;
+    }
+
+    public static ExpressionDTO optimize(ExpressionDTO exp,
+            int defaultScale, RoundingMode defaultRoundingMode, MathContext mathContext) {
+        return optimize(exp, defaultScale, defaultRoundingMode, mathContext, IntermediatePolicy.EXACT);
+    }
+
+    public static ExpressionDTO optimize(ExpressionDTO exp, int defaultScale, RoundingMode defaultRoundingMode,
+            MathContext mathContext, IntermediatePolicy intermediatePolicy) {
+        if (CollectionUtils.isEmpty(exp.getChildren())) {
+            return exp;
+        }
+
+        List<ExpressionDTO> optimizedChildren = new ArrayList<>();
+        for (ExpressionDTO child : exp.getChildren()) {
+            optimizedChildren.add(optimize(child, defaultScale, defaultRoundingMode, mathContext, intermediatePolicy));
+        }
+
+        if (exp.getType() == ExpressionType.CONDITIONAL) {
+            // dead branch pruning, the branch not taken is never calculated anyway
+            if (optimizedChildren.get(0).getType() == ExpressionType.CONSTANT
+                    && optimizedChildren.get(0).getCalculatedValue() instanceof Boolean condition) {
+                return condition ? optimizedChildren.get(1) : optimizedChildren.get(2);
+            }
+        } else if (exp.getType() == ExpressionType.CONDITIONAL_AND
+                || exp.getType() == ExpressionType.CONDITIONAL_OR) {
+            // false && x, true || x
+            Boolean shortCircuit = exp.getType() == ExpressionType.CONDITIONAL_OR;
+            if (optimizedChildren.size() > 1
+                    && optimizedChildren.get(0).getType() == ExpressionType.CONSTANT
+                    && shortCircuit.equals(optimizedChildren.get(0).getCalculatedValue())) {
+                return exp.copy(shortCircuit, ExpressionType.CONSTANT, null);
+            }
+        }
+
+        ExpressionDTO optimized = exp.copy(exp.getCalculatedValue(), exp.getType(), optimizedChildren);
+        if (!isFoldable(optimized)) {
+            return optimized;
+        }
+        Object value;
+        try {
+            value = new CompiledExpression(List.of(optimized), defaultScale, defaultRoundingMode, mathContext,
+                    TierPolicy.INTERPRETER_ONLY, NumericMode.DECIMAL, intermediatePolicy).calculate(Collections.emptyMap());
+        } catch (RuntimeException e) {
+            // keep it, the exception is thrown when (and only if) it is calculated
+            return optimized;
+        }
+        return exp.copy(value, ExpressionType.CONSTANT, null);
+    }
+
+    private static boolean isFoldable(ExpressionDTO exp) {
+        if (exp.getType() == ExpressionType.METHOD_INVOCATION) {
+            AbacusMethod method = MethodInvocationCalculator.getMethod(exp.getChildren().get(0).getText());
+            if (method == null || !method.isPure()) {
+                return false;
+            }
+        }
+        for (ExpressionDTO child : exp.getChildren()) {
+            if (!isConstant(child)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isConstant(ExpressionDTO exp) {
+        return exp.getType() == ExpressionType.CONSTANT
+                || exp.getType() == ExpressionType.NUMBER
+                || exp.getType() == ExpressionType.STRING_LITERAL
+                || exp.getType() == ExpressionType.SYMBOL;
+    }
+
+}
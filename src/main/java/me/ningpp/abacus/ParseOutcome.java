@@ -0,0 +1,68 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+import me.ningpp.abacus.exception.SyntaxException;
+
+import java.util.List;
+
+/**
+ * The result of parsing one expression, either the parsed expression or the syntax errors.
+ */
+public final class ParseOutcome {
+
+    private final String expression;
+    private final ExpressionResultDTO result;
+    private final List<SyntaxError> errors;
+
+    private ParseOutcome(String expression, ExpressionResultDTO result, List<SyntaxError> errors) {
+        this.expression = expression;
+        this.result = result;
+        this.errors = errors;
+    }
+
+    static ParseOutcome success(String expression, ExpressionResultDTO result) {
+        return new ParseOutcome(expression, result, List.of());
+    }
+
+    static ParseOutcome failure(String expression, List<SyntaxError> errors) {
+        return new ParseOutcome(expression, null, List.copyOf(errors));
+    }
+
+    public boolean isSuccess() {
+        return errors.isEmpty();
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    // null when parsing failed
+    public ExpressionResultDTO getResult() {
+        return result;
+    }
+
+    // every error in the order they were found, empty when parsing succeeded
+    public List<SyntaxError> getErrors() {
+        return errors;
+    }
+
+    // the first error as the exception parse would have thrown (a new one every time), null when parsing succeeded
+    public SyntaxException getError() {
+        return errors.isEmpty() ? null : errors.get(0).toException();
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+import me.ningpp.abacus.exception.SyntaxException;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Token;
+
+/**
+ * A syntax error reported by the parser, where it is and what is wrong. The message parse would throw
+ * as a {@link SyntaxException} is only put together when it is asked for.
+ */
+public final class SyntaxError {
+
+    private final int line;
+    private final int charPositionInLine;
+    private final Object offendingSymbol;
+    private final String description;
+    private final RecognitionException cause;
+
+    SyntaxError(int line, int charPositionInLine, Object offendingSymbol, String description,
+            RecognitionException cause) {
+        this.line = line;
+        this.charPositionInLine = charPositionInLine;
+        this.offendingSymbol = offendingSymbol;
+        this.description = description;
+        this.cause = cause;
+    }
+
+    // 1-based
+    public int getLine() {
+        return line;
+    }
+
+    // 0-based, in code points
+    public int getCharPositionInLine() {
+        return charPositionInLine;
+    }
+
+    // the text of the token the error was found at, null when there is none
+    public String getOffendingText() {
+        return offendingSymbol instanceof Token token ? token.getText() : null;
+    }
+
+    // what the parser says is wrong, without the position
+    public String getDescription() {
+        return description;
+    }
+
+    public String getMessage() {
+        return "line " + line + ":" + charPositionInLine + " at " + offendingSymbol + ": " + description;
+    }
+
+    SyntaxException toException() {
+        return new SyntaxException(getMessage(), cause, !AbacusUtil.isStacklessSyntaxExceptions());
+    }
+
+    @Override
+    public String toString() {
+        return getMessage();
+    }
+
+}
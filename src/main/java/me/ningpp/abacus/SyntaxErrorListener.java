@@ -15,17 +15,34 @@
  */
 package me.ningpp.abacus;
 
-import me.ningpp.abacus.exception.SyntaxException;
 import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
 
+import java.util.List;
+
 public class SyntaxErrorListener extends BaseErrorListener {
 
+    // null when the first error is thrown
+    private final List<SyntaxError> errors;
+
+    public SyntaxErrorListener() {
+        this(null);
+    }
+
+    // collects the errors instead, the parser recovers and goes on
+    public SyntaxErrorListener(List<SyntaxError> errors) {
+        this.errors = errors;
+    }
+
     @Override
     public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
             int charPositionInLine, String msg, RecognitionException e) {
-        throw new SyntaxException("line " + line + ":" + charPositionInLine + " at " + offendingSymbol + ": " + msg, e);
+        SyntaxError error = new SyntaxError(line, charPositionInLine, offendingSymbol, msg, e);
+        if (errors == null) {
+            throw error.toException();
+        }
+        errors.add(error);
     }
 
 }
@@ -0,0 +1,81 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * When a {@link CompiledExpression} is promoted to a faster {@link ExecutionTier}.
+ * An expression starts in the interpreter and is recompiled on the given executor once it has been
+ * evaluated the threshold number of times, a threshold of {@link Integer#MAX_VALUE} never promotes.
+ */
+public final class TierPolicy {
+
+    public static final TierPolicy DEFAULT = new TierPolicy(100, 10_000, ForkJoinPool.commonPool());
+
+    public static final TierPolicy INTERPRETER_ONLY = new TierPolicy(Integer.MAX_VALUE, Integer.MAX_VALUE,
+            Runnable::run);
+
+    private final int closureThreshold;
+    private final int bytecodeThreshold;
+    private final Executor executor;
+
+    public TierPolicy(int closureThreshold, int bytecodeThreshold, Executor executor) {
+        if (closureThreshold < 0 || bytecodeThreshold < 0) {
+            throw new IllegalArgumentException("thresholds must not be negative, but "
+                    + closureThreshold + ", " + bytecodeThreshold);
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("executor is null");
+        }
+        this.closureThreshold = closureThreshold;
+        this.bytecodeThreshold = bytecodeThreshold;
+        this.executor = executor;
+    }
+
+    // the tier to compile after the given number of invocations, null when the current one stays
+    ExecutionTier nextTier(ExecutionTier current, int invocations) {
+        if (current != ExecutionTier.BYTECODE && invocations >= bytecodeThreshold
+                && bytecodeThreshold != Integer.MAX_VALUE) {
+            return ExecutionTier.BYTECODE;
+        }
+        if (current == ExecutionTier.INTERPRETER && invocations >= closureThreshold
+                && closureThreshold != Integer.MAX_VALUE) {
+            return ExecutionTier.CLOSURE;
+        }
+        return null;
+    }
+
+    boolean isFinal(ExecutionTier current) {
+        return current == ExecutionTier.BYTECODE
+                || current == ExecutionTier.CLOSURE && bytecodeThreshold == Integer.MAX_VALUE
+                || closureThreshold == Integer.MAX_VALUE && bytecodeThreshold == Integer.MAX_VALUE;
+    }
+
+    public int getClosureThreshold() {
+        return closureThreshold;
+    }
+
+    public int getBytecodeThreshold() {
+        return bytecodeThreshold;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+import java.time.Duration;
+
+/**
+ * What {@link AbacusUtil#warmup} did: how many expressions it parsed, how long it took and how many
+ * states the prediction DFAs of the ANTLR lexer and parser have after it (and how many of them it built).
+ */
+public final class WarmupReport {
+
+    private final int expressions;
+    private final int syntaxErrors;
+    private final Duration duration;
+    private final int lexerDfaStates;
+    private final int lexerDfaStatesBuilt;
+    private final int parserDfaStates;
+    private final int parserDfaStatesBuilt;
+
+    WarmupReport(int expressions, int syntaxErrors, Duration duration, int lexerDfaStates, int lexerDfaStatesBuilt,
+                 int parserDfaStates, int parserDfaStatesBuilt) {
+        this.expressions = expressions;
+        this.syntaxErrors = syntaxErrors;
+        this.duration = duration;
+        this.lexerDfaStates = lexerDfaStates;
+        this.lexerDfaStatesBuilt = lexerDfaStatesBuilt;
+        this.parserDfaStates = parserDfaStates;
+        this.parserDfaStatesBuilt = parserDfaStatesBuilt;
+    }
+
+    public int getExpressions() {
+        return expressions;
+    }
+
+    public int getSyntaxErrors() {
+        return syntaxErrors;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public int getLexerDfaStates() {
+        return lexerDfaStates;
+    }
+
+    public int getLexerDfaStatesBuilt() {
+        return lexerDfaStatesBuilt;
+    }
+
+    public int getParserDfaStates() {
+        return parserDfaStates;
+    }
+
+    public int getParserDfaStatesBuilt() {
+        return parserDfaStatesBuilt;
+    }
+
+    @Override
+    public String toString() {
+        return "WarmupReport{expressions=" + expressions + ", syntaxErrors=" + syntaxErrors
+                + ", duration=" + duration.toMillis() + "ms, lexerDfaStates=" + lexerDfaStates
+                + " (" + lexerDfaStatesBuilt + " built), parserDfaStates=" + parserDfaStates
+                + " (" + parserDfaStatesBuilt + " built)}";
+    }
+
+}
@@ -15,33 +15,65 @@
  */
 package me.ningpp.abacus.calculator;
 
+import me.ningpp.abacus.CalculateFrame;
 import me.ningpp.abacus.ExpressionDTO;
 import me.ningpp.abacus.ExpressionType;
 
-import java.math.MathContext;
-import java.math.RoundingMode;
-import java.util.Map;
+import java.math.BigDecimal;
+import java.util.List;
 
+import static me.ningpp.abacus.AbacusUtil.calculateOne;
 import static me.ningpp.abacus.calculator.ArithmeticCalculator.calculateNumber;
 
 public class AdditiveMultiplicativeCalculator implements Calculator {
 
     @Override
-    public Object calculate(ExpressionDTO expr, Map<String, Object> context, int defaultScale, RoundingMode defaultRoundingMode, MathContext mathContext) {
-        Object result = expr.getChildren().get(0).getCalculatedValue();
+    public Object calculate(ExpressionDTO expr, CalculateFrame frame) {
+        ExpressionDTO first = expr.getChildren().get(0);
+        Object result = calculateOne(first, frame);
         if (expr.getChildren().size() > 1) {
-            String preSymbol = expr.getChildren().get(1).getText();
-            for (int i = 2; i < expr.getChildren().size(); i++) {
-                Object v = expr.getChildren().get(i).getCalculatedValue();
-                if (expr.getChildren().get(i).getType() != ExpressionType.SYMBOL) {
-                    result = calculateNumber(result, preSymbol, v,
-                            defaultScale, defaultRoundingMode, mathContext);
-                } else {
-                    preSymbol = expr.getChildren().get(i).getText();
+            result = frame.toDecimal(first, result);
+            if (frame.getMathContext() == null) {
+                result = accumulate(expr, result, frame);
+            } else {
+                String preSymbol = expr.getChildren().get(1).getText();
+                for (int i = 2; i < expr.getChildren().size(); i++) {
+                    ExpressionDTO child = expr.getChildren().get(i);
+                    if (child.getType() != ExpressionType.SYMBOL) {
+                        Object operand = frame.toDecimal(child, calculateOne(child, frame));
+                        result = calculateNumber(result, preSymbol, operand,
+                                frame.getDefaultScale(), frame.getDefaultRoundingMode(), frame.getMathContext());
+                    } else {
+                        preSymbol = child.getText();
+                    }
                 }
             }
+            // the value of a chain is a BigDecimal
+            result = frame.getIntermediatePolicy().apply((BigDecimal) result);
         }
         return result;
     }
 
+    // the chain in a mutable decimal, only its value is allocated (while the operands fit a long)
+    private static BigDecimal accumulate(ExpressionDTO expr, Object first, CalculateFrame frame) {
+        List<ExpressionDTO> children = expr.getChildren();
+        ScaledDecimal accumulator = frame.borrowAccumulator();
+        try {
+            accumulator.setValue(first);
+            char preSymbol = children.get(1).getText().charAt(0);
+            for (int i = 2; i < children.size(); i++) {
+                ExpressionDTO child = children.get(i);
+                if (child.getType() != ExpressionType.SYMBOL) {
+                    accumulator.apply(preSymbol, frame.toDecimal(child, calculateOne(child, frame)),
+                            frame.getDefaultScale(), frame.getDefaultRoundingMode());
+                } else {
+                    preSymbol = child.getText().charAt(0);
+                }
+            }
+            return accumulator.toBigDecimal();
+        } finally {
+            frame.releaseAccumulator();
+        }
+    }
+
 }
@@ -15,73 +15,106 @@
  */
 package me.ningpp.abacus.calculator;
 
+import me.ningpp.abacus.CalculateFrame;
 import me.ningpp.abacus.ExpressionDTO;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.math.MathContext;
 import java.math.RoundingMode;
-import java.util.Map;
+
+import static me.ningpp.abacus.AbacusUtil.calculateOne;
 
 public class ArithmeticCalculator implements Calculator {
 
     @Override
-    public Object calculate(ExpressionDTO expr, Map<String, Object> context, int defaultScale, RoundingMode defaultRoundingMode, MathContext mathContext) {
+    public Object calculate(ExpressionDTO expr, CalculateFrame frame) {
         String symbol = expr.getChildren().get(0).getText();
         boolean additiveSymbol = "+".equals(symbol) || "-".equals(symbol);
         return calculateNumber(additiveSymbol ? BigDecimal.ZERO : BigDecimal.ONE,
                 symbol,
-                expr.getChildren().get(1).getCalculatedValue(),
-                defaultScale, defaultRoundingMode, mathContext);
+                frame.toDecimal(expr.getChildren().get(1), calculateOne(expr.getChildren().get(1), frame)),
+                frame.getDefaultScale(), frame.getDefaultRoundingMode(), frame.getMathContext());
     }
 
     public static BigDecimal calculateNumber(Object left, String preSymbol, Object right,
             int defaultScale, RoundingMode defaultRoundingMode, MathContext mathContext) {
-        if (left == null) {
-            throw new IllegalArgumentException("'left' value can't be null!");
+        if ("*".equals(preSymbol)) {
+            return multiply(left, right, mathContext);
+        } else if ("/".equals(preSymbol)) {
+            return divide(left, right, defaultScale, defaultRoundingMode, mathContext);
+        } else if ("+".equals(preSymbol)) {
+            return add(left, right, mathContext);
+        } else if ("-".equals(preSymbol)) {
+            return subtract(left, right, mathContext);
+        } else {
+            checkNotNull(left, right);
+            toDecimal(left);
+            toDecimal(right);
+            throw new IllegalStateException("unsupport Symbol " + preSymbol);
         }
-        if (right == null) {
-            throw new IllegalArgumentException("'right' value can't be null!");
+    }
+
+    public static BigDecimal add(Object left, Object right, MathContext mathContext) {
+        checkNotNull(left, right);
+        BigDecimal leftDecimal = toDecimal(left);
+        BigDecimal rightDecimal = toDecimal(right);
+        if (mathContext != null) {
+            return leftDecimal.add(rightDecimal, mathContext);
+        } else {
+            return leftDecimal.add(rightDecimal);
         }
+    }
 
+    public static BigDecimal subtract(Object left, Object right, MathContext mathContext) {
+        checkNotNull(left, right);
         BigDecimal leftDecimal = toDecimal(left);
         BigDecimal rightDecimal = toDecimal(right);
+        if (mathContext != null) {
+            return leftDecimal.subtract(rightDecimal, mathContext);
+        } else {
+            return leftDecimal.subtract(rightDecimal);
+        }
+    }
 
-        BigDecimal result;
-        if ("*".equals(preSymbol)) {
-            if (mathContext != null) {
-                result = leftDecimal.multiply(rightDecimal, mathContext);
-            } else {
-                result = leftDecimal.multiply(rightDecimal);
-            }
-        } else if ("/".equals(preSymbol)) {
-            if (mathContext != null) {
-                result = leftDecimal.divide(rightDecimal, mathContext);
-            } else {
-                result = leftDecimal.divide(rightDecimal, defaultScale, defaultRoundingMode);
-            }
-        } else if ("+".equals(preSymbol)) {
-            if (mathContext != null) {
-                result = leftDecimal.add(rightDecimal, mathContext);
-            } else {
-                result = leftDecimal.add(rightDecimal);
-            }
-        } else if ("-".equals(preSymbol)) {
-            if (mathContext != null) {
-                result = leftDecimal.subtract(rightDecimal, mathContext);
-            } else {
-                result = leftDecimal.subtract(rightDecimal);
-            }
+    public static BigDecimal multiply(Object left, Object right, MathContext mathContext) {
+        checkNotNull(left, right);
+        BigDecimal leftDecimal = toDecimal(left);
+        BigDecimal rightDecimal = toDecimal(right);
+        if (mathContext != null) {
+            return leftDecimal.multiply(rightDecimal, mathContext);
         } else {
-            throw new IllegalStateException("unsupport Symbol " + preSymbol);
+            return leftDecimal.multiply(rightDecimal);
+        }
+    }
+
+    public static BigDecimal divide(Object left, Object right,
+            int defaultScale, RoundingMode defaultRoundingMode, MathContext mathContext) {
+        checkNotNull(left, right);
+        BigDecimal leftDecimal = toDecimal(left);
+        BigDecimal rightDecimal = toDecimal(right);
+        if (mathContext != null) {
+            return leftDecimal.divide(rightDecimal, mathContext);
+        } else {
+            return leftDecimal.divide(rightDecimal, defaultScale, defaultRoundingMode);
+        }
+    }
+
+    private static void checkNotNull(Object left, Object right) {
+        if (left == null) {
+            throw new IllegalArgumentException("'left' value can't be null!");
+        }
+        if (right == null) {
+            throw new IllegalArgumentException("'right' value can't be null!");
         }
-        return result;
     }
 
     public static BigDecimal toDecimal(Object left) {
         if (left instanceof BigDecimal r) {
             return r;
         } else if (left instanceof Number n) {
-            return new BigDecimal(n.toString());
+            BigDecimal decimal = numberToDecimal(n);
+            return decimal != null ? decimal : new BigDecimal(n.toString());
         } else if (left instanceof CharSequence c) {
             return new BigDecimal(c.toString());
         } else {
@@ -89,4 +122,20 @@ public class ArithmeticCalculator implements Calculator {
         }
     }
 
+    // toDecimal of the usual number types, which can't fail, without parsing a string where possible,
+    // null for any other value
+    public static BigDecimal numberToDecimal(Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        } else if (value instanceof Double d) {
+            // the same as new BigDecimal(d.toString())
+            return Double.isFinite(d) ? BigDecimal.valueOf(d) : null;
+        } else if (value instanceof Float f) {
+            return Float.isFinite(f) ? new BigDecimal(f.toString()) : null;
+        } else if (value instanceof BigInteger i) {
+            return new BigDecimal(i);
+        }
+        return null;
+    }
+
 }
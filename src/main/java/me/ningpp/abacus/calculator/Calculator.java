@@ -15,15 +15,11 @@
  */
 package me.ningpp.abacus.calculator;
 
+import me.ningpp.abacus.CalculateFrame;
 import me.ningpp.abacus.ExpressionDTO;
 
-import java.math.MathContext;
-import java.math.RoundingMode;
-import java.util.Map;
-
 public interface Calculator {
 
-    Object calculate(ExpressionDTO expr, Map<String, Object> context,
-            int defaultScale, RoundingMode defaultRoundingMode, MathContext mathContext);
+    Object calculate(ExpressionDTO expr, CalculateFrame frame);
 
 }
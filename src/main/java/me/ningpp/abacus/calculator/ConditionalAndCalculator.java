@@ -15,34 +15,36 @@
  */
 package me.ningpp.abacus.calculator;
 
+import me.ningpp.abacus.CalculateFrame;
 import me.ningpp.abacus.ExpressionDTO;
 
-import java.math.MathContext;
-import java.math.RoundingMode;
-import java.util.Map;
-
 import static me.ningpp.abacus.AbacusUtil.calculateOne;
 
 public class ConditionalAndCalculator implements Calculator {
 
     @Override
-    public Object calculate(ExpressionDTO expr, Map<String, Object> context, int defaultScale, RoundingMode defaultRoundingMode, MathContext mathContext) {
+    public Object calculate(ExpressionDTO expr, CalculateFrame frame) {
         if (expr.getChildren().size() == 1) {
-            return calculateOne(expr.getChildren().get(0), context, defaultScale, defaultRoundingMode, mathContext);
+            return calculateOne(expr.getChildren().get(0), frame);
         }
-        Object left = expr.getChildren().get(0).getCalculatedValue();
-        if (left instanceof Boolean leftBoolean) {
-            if (Boolean.FALSE.equals(leftBoolean)) {
-                return false;
-            }
+        if (!leftBoolean(calculateOne(expr.getChildren().get(0), frame))) {
+            return false;
+        }
+        return rightBoolean(calculateOne(expr.getChildren().get(2), frame));
+    }
 
-            Object right = expr.getChildren().get(2).getCalculatedValue();
-            if (right instanceof Boolean rightBoolean) {
-                return rightBoolean;
-            }
-            throw new IllegalArgumentException("right value must be Boolean value, but right = " + right);
+    public static boolean leftBoolean(Object left) {
+        if (left instanceof Boolean leftBoolean) {
+            return leftBoolean;
         }
         throw new IllegalArgumentException("left value must be Boolean value, but left = " + left);
     }
 
+    public static boolean rightBoolean(Object right) {
+        if (right instanceof Boolean rightBoolean) {
+            return rightBoolean;
+        }
+        throw new IllegalArgumentException("right value must be Boolean value, but right = " + right);
+    }
+
 }
@@ -15,30 +15,32 @@
  */
 package me.ningpp.abacus.calculator;
 
+import me.ningpp.abacus.CalculateFrame;
 import me.ningpp.abacus.ExpressionDTO;
 
-import java.math.MathContext;
-import java.math.RoundingMode;
-import java.util.Map;
+import static me.ningpp.abacus.AbacusUtil.calculateOne;
 
 public class ConditionalCalculator implements Calculator {
 
     @Override
-    public Object calculate(ExpressionDTO expr, Map<String, Object> context, int defaultScale, RoundingMode defaultRoundingMode, MathContext mathContext) {
-        Object conditionObject = expr.getChildren().get(0).getCalculatedValue();
-        if (conditionObject instanceof Boolean condition) {
-            if (condition) {
-                // then expr
-                ExpressionDTO thenExpr = expr.getChildren().get(1);
-                return thenExpr.getCalculatedValue();
-            } else {
-                // else expr
-                ExpressionDTO elseExpr = expr.getChildren().get(2);
-                return elseExpr.getCalculatedValue();
-            }
+    public Object calculate(ExpressionDTO expr, CalculateFrame frame) {
+        Object conditionObject = calculateOne(expr.getChildren().get(0), frame);
+        if (condition(conditionObject, expr.getText())) {
+            // then expr
+            ExpressionDTO thenExpr = expr.getChildren().get(1);
+            return calculateOne(thenExpr, frame);
         } else {
-            throw new IllegalArgumentException("value must be Boolean value, but " + conditionObject + ", expression = " + expr.getText());
+            // else expr
+            ExpressionDTO elseExpr = expr.getChildren().get(2);
+            return calculateOne(elseExpr, frame);
+        }
+    }
+
+    public static boolean condition(Object conditionObject, String expressionText) {
+        if (conditionObject instanceof Boolean condition) {
+            return condition;
         }
+        throw new IllegalArgumentException("value must be Boolean value, but " + conditionObject + ", expression = " + expressionText);
     }
 
 }
@@ -15,19 +15,16 @@
  */
 package me.ningpp.abacus.calculator;
 
+import me.ningpp.abacus.CalculateFrame;
 import me.ningpp.abacus.ExpressionDTO;
 
-import java.math.MathContext;
-import java.math.RoundingMode;
-import java.util.Map;
-
 import static me.ningpp.abacus.AbacusUtil.calculateOne;
 
 public class ConditionalThenCalculator implements Calculator {
 
     @Override
-    public Object calculate(ExpressionDTO expr, Map<String, Object> context, int defaultScale, RoundingMode defaultRoundingMode, MathContext mathContext) {
-        return calculateOne(expr.getChildren().get(0), context, defaultScale, defaultRoundingMode, mathContext);
+    public Object calculate(ExpressionDTO expr, CalculateFrame frame) {
+        return calculateOne(expr.getChildren().get(0), frame);
     }
 
 }
@@ -15,11 +15,9 @@
  */
 package me.ningpp.abacus.calculator;
 
+import me.ningpp.abacus.CalculateFrame;
 import me.ningpp.abacus.ExpressionDTO;
 
-import java.math.MathContext;
-import java.math.RoundingMode;
-import java.util.Map;
 import java.util.Objects;
 
 import static me.ningpp.abacus.AbacusUtil.calculateOne;
@@ -27,14 +25,14 @@ import static me.ningpp.abacus.AbacusUtil.calculateOne;
 public class EqualityCalculator implements Calculator {
 
     @Override
-    public Object calculate(ExpressionDTO expr, Map<String, Object> context, int defaultScale, RoundingMode defaultRoundingMode, MathContext mathContext) {
+    public Object calculate(ExpressionDTO expr, CalculateFrame frame) {
         if (expr.getChildren().size() == 1) {
-            return calculateOne(expr.getChildren().get(0), context, defaultScale, defaultRoundingMode, mathContext);
+            return calculateOne(expr.getChildren().get(0), frame);
         }
         ExpressionDTO leftExpr = expr.getChildren().get(0);
         ExpressionDTO rightExpr = expr.getChildren().get(2);
-        Object left = leftExpr.getCalculatedValue();
-        Object right = rightExpr.getCalculatedValue();
+        Object left = calculateOne(leftExpr, frame);
+        Object right = calculateOne(rightExpr, frame);
         if ("==".equals(expr.getChildren().get(1).getText())) {
             return Objects.equals(left, right);
         } else {
@@ -15,7 +15,7 @@
  */
 package me.ningpp.abacus.calculator;
 
-import me.ningpp.abacus.AbacusUtil;
+import me.ningpp.abacus.CalculateFrame;
 import me.ningpp.abacus.ExpressionDTO;
 import me.ningpp.abacus.exception.MethodNotFoundException;
 import me.ningpp.abacus.methods.AbacusMethod;
@@ -23,11 +23,11 @@ import me.ningpp.abacus.methods.MaxMethod;
 import me.ningpp.abacus.methods.MinMethod;
 import me.ningpp.abacus.methods.StringContainsAnyMethod;
 
-import java.math.MathContext;
-import java.math.RoundingMode;
 import java.util.HashMap;
 import java.util.Map;
 
+import static me.ningpp.abacus.AbacusUtil.calculateOne;
+
 public class MethodInvocationCalculator implements Calculator {
 
     private static final Map<String, AbacusMethod> METHODS = new HashMap<>();
@@ -39,20 +39,30 @@ public class MethodInvocationCalculator implements Calculator {
         METHODS.put("stringContainsAny", new StringContainsAnyMethod());
     }
 
-    @Override
-    public Object calculate(ExpressionDTO expr, Map<String, Object> context, int defaultScale, RoundingMode defaultRoundingMode, MathContext mathContext) {
-        String methodName = expr.getChildren().get(0).getText();
+    public static AbacusMethod getMethod(String methodName) {
+        return METHODS.get(methodName);
+    }
+
+    public static AbacusMethod requireMethod(String methodName) {
         AbacusMethod abacusMethod = METHODS.get(methodName);
         if (abacusMethod == null) {
             throw new MethodNotFoundException("should register method before use it, method name is " + methodName);
         }
+        return abacusMethod;
+    }
+
+    @Override
+    public Object calculate(ExpressionDTO expr, CalculateFrame frame) {
+        AbacusMethod abacusMethod = requireMethod(expr.getChildren().get(0).getText());
         Object[] args = null;
         int childCount = expr.getChildren().size();
         int argCount = expr.getChildren().size() - 1;
         if (argCount > 0) {
             args = new Object[argCount];
             for (int i = 1; i < childCount; i++) {
-                args[i-1] = expr.getChildren().get(i).getCalculatedValue();
+                ExpressionDTO arg = expr.getChildren().get(i);
+                args[i-1] = abacusMethod.isNumeric() ? frame.toDecimal(arg, calculateOne(arg, frame))
+                        : calculateOne(arg, frame);
             }
         }
         return abacusMethod.execute(args);
@@ -15,41 +15,41 @@
  */
 package me.ningpp.abacus.calculator;
 
+import me.ningpp.abacus.CalculateFrame;
 import me.ningpp.abacus.ExpressionDTO;
 
-import java.math.MathContext;
-import java.math.RoundingMode;
-import java.util.Map;
-
 import static me.ningpp.abacus.AbacusUtil.calculateOne;
 
 public class RelationalCalculator implements Calculator {
 
     @Override
-    public Object calculate(ExpressionDTO expr, Map<String, Object> context, int defaultScale, RoundingMode defaultRoundingMode, MathContext mathContext) {
+    public Object calculate(ExpressionDTO expr, CalculateFrame frame) {
         if (expr.getChildren().size() == 1) {
-            return calculateOne(expr.getChildren().get(0), context, defaultScale, defaultRoundingMode, mathContext);
+            return calculateOne(expr.getChildren().get(0), frame);
         }
         String symbol = expr.getChildren().get(1).getText();
         ExpressionDTO leftExpr = expr.getChildren().get(0);
         ExpressionDTO rightExpr = expr.getChildren().get(2);
-        Object left = leftExpr.getCalculatedValue();
-        Object right = rightExpr.getCalculatedValue();
-        if (left instanceof Comparable leftNumber && right instanceof Comparable rightNumber) {
-            int r = leftNumber.compareTo(rightNumber);
-            if ("<".equals(symbol)) {
-                return r < 0;
-            } else if (">".equals(symbol)) {
-                return r > 0;
-            } else if ("<=".equals(symbol)) {
-                return r <= 0;
-            } else if (">=".equals(symbol)) {
-                return r >= 0;
-            } else {
-                throw new IllegalStateException(expr.getText());
-            }
+        Object left = calculateOne(leftExpr, frame);
+        Object right = calculateOne(rightExpr, frame);
+        int r = compare(left, right);
+        if ("<".equals(symbol)) {
+            return r < 0;
+        } else if (">".equals(symbol)) {
+            return r > 0;
+        } else if ("<=".equals(symbol)) {
+            return r <= 0;
+        } else if (">=".equals(symbol)) {
+            return r >= 0;
         } else {
-            throw new IllegalArgumentException("can't compare these two value, left " + left + ", right = " + right);
+            throw new IllegalStateException(expr.getText());
+        }
+    }
+
+    public static int compare(Object left, Object right) {
+        if (left instanceof Comparable leftNumber && right instanceof Comparable rightNumber) {
+            return leftNumber.compareTo(rightNumber);
         }
+        throw new IllegalArgumentException("can't compare these two value, left " + left + ", right = " + right);
     }
 }
@@ -0,0 +1,333 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus.calculator;
+
+import me.ningpp.abacus.IntermediatePolicy;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * A mutable decimal for calculating without a {@code MathContext}, the (unscaled long, scale) pair of a
+ * {@link BigDecimal} while it fits, operated on with overflow checked longs. An operation that overflows, or that
+ * BigDecimal would reject, is done by {@link ArithmeticCalculator} on BigDecimals instead and the value stays
+ * a BigDecimal from then on, so the results (value and scale) and the exceptions are always the same.
+ * A value that is not converted yet (see {@link #setValue}) is converted when it is operated on,
+ * null checks and conversions happen in the same order as in {@link ArithmeticCalculator#calculateNumber}.
+ */
+public final class ScaledDecimal {
+
+    private static final long[] POWERS_OF_TEN = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+        10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+        1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+
+    // the largest precision whose unscaled values always fit a long
+    private static final int LONG_PRECISION = 18;
+
+    private long unscaled;
+    private int scale;
+    // not null when the value doesn't fit the pair
+    private BigDecimal decimal;
+    // a value still to be converted, see setValue
+    private Object value;
+    private boolean pending;
+
+    public static ScaledDecimal of(BigDecimal decimal) {
+        ScaledDecimal scaled = new ScaledDecimal();
+        scaled.set(decimal);
+        return scaled;
+    }
+
+    public void set(long unscaled, int scale) {
+        this.unscaled = unscaled;
+        this.scale = scale;
+        this.decimal = null;
+        this.value = null;
+        this.pending = false;
+    }
+
+    public void set(ScaledDecimal other) {
+        this.unscaled = other.unscaled;
+        this.scale = other.scale;
+        this.decimal = other.decimal;
+        this.value = other.value;
+        this.pending = other.pending;
+    }
+
+    public void set(BigDecimal decimal) {
+        if (decimal.precision() <= LONG_PRECISION) {
+            set(unscaledValue(decimal), decimal.scale());
+        } else {
+            this.decimal = decimal;
+            this.value = null;
+            this.pending = false;
+        }
+    }
+
+    // the unscaled value of a decimal whose precision is at most LONG_PRECISION
+    private static long unscaledValue(BigDecimal decimal) {
+        // the moved decimal has scale 0 and the same compact value, unscaledValue() would create a BigInteger
+        return decimal.movePointRight(decimal.scale()).longValue();
+    }
+
+    // any operand value, converted by ArithmeticCalculator.toDecimal when it is operated on
+    public void setValue(Object value) {
+        this.value = value;
+        this.pending = true;
+    }
+
+    public ScaledDecimal copy() {
+        ScaledDecimal copy = new ScaledDecimal();
+        copy.set(this);
+        return copy;
+    }
+
+    public BigDecimal toBigDecimal() {
+        if (pending) {
+            return ArithmeticCalculator.toDecimal(value);
+        }
+        return decimal != null ? decimal : BigDecimal.valueOf(unscaled, scale);
+    }
+
+    // this = this symbol operand, as ArithmeticCalculator.calculateNumber calculates it without a MathContext
+    public void apply(char symbol, ScaledDecimal operand, int defaultScale, RoundingMode defaultRoundingMode) {
+        if (pending || operand.pending) {
+            if (pending && value == null) {
+                throw new IllegalArgumentException("'left' value can't be null!");
+            }
+            if (operand.pending && operand.value == null) {
+                throw new IllegalArgumentException("'right' value can't be null!");
+            }
+            resolve();
+            operand.resolve();
+        }
+        if (decimal == null && operand.decimal == null
+                && applyExact(symbol, operand.unscaled, operand.scale, defaultScale, defaultRoundingMode)) {
+            return;
+        }
+        decimal = calculate(symbol, toBigDecimal(), operand.toBigDecimal(), defaultScale, defaultRoundingMode);
+    }
+
+    // the same with any operand value, converted by ArithmeticCalculator.toDecimal
+    public void apply(char symbol, Object operand, int defaultScale, RoundingMode defaultRoundingMode) {
+        if (pending && value == null) {
+            throw new IllegalArgumentException("'left' value can't be null!");
+        }
+        if (operand == null) {
+            throw new IllegalArgumentException("'right' value can't be null!");
+        }
+        resolve();
+        BigDecimal right = ArithmeticCalculator.toDecimal(operand);
+        if (decimal == null && right.precision() <= LONG_PRECISION
+                && applyExact(symbol, unscaledValue(right), right.scale(), defaultScale, defaultRoundingMode)) {
+            return;
+        }
+        decimal = calculate(symbol, toBigDecimal(), right, defaultScale, defaultRoundingMode);
+    }
+
+    private static BigDecimal calculate(char symbol, BigDecimal left, BigDecimal right,
+            int defaultScale, RoundingMode defaultRoundingMode) {
+        return switch (symbol) {
+            case '+' -> ArithmeticCalculator.add(left, right, null);
+            case '-' -> ArithmeticCalculator.subtract(left, right, null);
+            case '*' -> ArithmeticCalculator.multiply(left, right, null);
+            case '/' -> ArithmeticCalculator.divide(left, right, defaultScale, defaultRoundingMode, null);
+            default -> throw new IllegalStateException("unsupport Symbol " + symbol);
+        };
+    }
+
+    // false when the pair can't hold the result, or BigDecimal would throw
+    private boolean applyExact(char symbol, long right, int rightScale, int defaultScale, RoundingMode roundingMode) {
+        return switch (symbol) {
+            case '+' -> addExact(right, rightScale);
+            case '-' -> right != Long.MIN_VALUE && addExact(-right, rightScale);
+            case '*' -> multiplyExact(right, rightScale);
+            case '/' -> divideExact(right, rightScale, defaultScale, roundingMode);
+            default -> false;
+        };
+    }
+
+    private boolean addExact(long right, int rightScale) {
+        if (scale != rightScale) {
+            return addAligned(right, rightScale);
+        }
+        long result = unscaled + right;
+        // the sum overflowed when its sign differs from the signs of both operands
+        if (((unscaled ^ result) & (right ^ result)) < 0) {
+            return false;
+        }
+        unscaled = result;
+        return true;
+    }
+
+    // the operand with the smaller scale is multiplied to the larger one, like BigDecimal.add does
+    private boolean addAligned(long right, int rightScale) {
+        long leftShift = Math.max(0L, (long) rightScale - scale);
+        long rightShift = Math.max(0L, (long) scale - rightScale);
+        if (leftShift > LONG_PRECISION || rightShift > LONG_PRECISION) {
+            return false;
+        }
+        long left = unscaled * POWERS_OF_TEN[(int) leftShift];
+        long aligned = right * POWERS_OF_TEN[(int) rightShift];
+        if (overflows(unscaled, POWERS_OF_TEN[(int) leftShift], left)
+                || overflows(right, POWERS_OF_TEN[(int) rightShift], aligned)) {
+            return false;
+        }
+        long result = left + aligned;
+        if (((left ^ result) & (aligned ^ result)) < 0) {
+            return false;
+        }
+        unscaled = result;
+        scale = Math.max(scale, rightScale);
+        return true;
+    }
+
+    private boolean multiplyExact(long right, int rightScale) {
+        long resultScale = (long) scale + rightScale;
+        long result = unscaled * right;
+        if (resultScale != (int) resultScale || overflows(unscaled, right, result)) {
+            return false;
+        }
+        unscaled = result;
+        scale = (int) resultScale;
+        return true;
+    }
+
+    // rounds this / right to the scale, BigDecimal.divide(divisor, scale, roundingMode)
+    private boolean divideExact(long right, int rightScale, int resultScale, RoundingMode roundingMode) {
+        if (right == 0 || right == Long.MIN_VALUE || unscaled == Long.MIN_VALUE) {
+            return false;
+        }
+        // unscaled / 10^scale / (right / 10^rightScale) * 10^resultScale
+        long exponent = (long) rightScale + resultScale - scale;
+        if (Math.abs(exponent) > LONG_PRECISION) {
+            return false;
+        }
+        long numerator = unscaled;
+        long denominator = right;
+        if (exponent >= 0) {
+            numerator = unscaled * POWERS_OF_TEN[(int) exponent];
+            if (overflows(unscaled, POWERS_OF_TEN[(int) exponent], numerator)) {
+                return false;
+            }
+        } else {
+            denominator = right * POWERS_OF_TEN[(int) -exponent];
+            if (overflows(right, POWERS_OF_TEN[(int) -exponent], denominator)) {
+                return false;
+            }
+        }
+        if (numerator == Long.MIN_VALUE || denominator == Long.MIN_VALUE) {
+            return false;
+        }
+        long quotient = numerator / denominator;
+        long remainder = numerator % denominator;
+        if (remainder != 0) {
+            int sign = (numerator < 0) == (denominator < 0) ? 1 : -1;
+            long absRemainder = Math.abs(remainder);
+            long absDenominator = Math.abs(denominator);
+            // the remainder against half of the denominator, without overflowing
+            int half = Long.compare(absRemainder, absDenominator - absRemainder);
+            boolean increment;
+            switch (roundingMode) {
+                case UP -> increment = true;
+                case DOWN -> increment = false;
+                case CEILING -> increment = sign > 0;
+                case FLOOR -> increment = sign < 0;
+                case HALF_UP -> increment = half >= 0;
+                case HALF_DOWN -> increment = half > 0;
+                case HALF_EVEN -> increment = half > 0 || half == 0 && (quotient & 1) != 0;
+                default -> {
+                    // UNNECESSARY, BigDecimal throws
+                    return false;
+                }
+            }
+            if (increment) {
+                quotient += sign;
+            }
+        }
+        unscaled = quotient;
+        scale = resultScale;
+        return true;
+    }
+
+    // whether left * right overflowed to product
+    private static boolean overflows(long left, long right, long product) {
+        return Math.multiplyHigh(left, right) != (product >> 63);
+    }
+
+    private void resolve() {
+        if (pending) {
+            Object converting = value;
+            pending = false;
+            value = null;
+            set(ArithmeticCalculator.toDecimal(converting));
+        }
+    }
+
+    // policy.apply, a value within the caps is kept as it is
+    public void round(IntermediatePolicy policy) {
+        if (!pending && decimal == null && scale <= policy.getMaxScale() && withinPrecision(policy.getMathContext())) {
+            return;
+        }
+        set(policy.apply(toBigDecimal()));
+    }
+
+    private boolean withinPrecision(MathContext mathContext) {
+        // a long has at most 19 digits
+        if (mathContext == null || mathContext.getPrecision() > LONG_PRECISION) {
+            return true;
+        }
+        long limit = POWERS_OF_TEN[mathContext.getPrecision()];
+        return unscaled > -limit && unscaled < limit;
+    }
+
+    // BigDecimal.compareTo
+    public int compareTo(ScaledDecimal other) {
+        resolve();
+        other.resolve();
+        if (decimal == null && other.decimal == null) {
+            if (scale == other.scale) {
+                return Long.compare(unscaled, other.unscaled);
+            }
+            int commonScale = Math.max(scale, other.scale);
+            long shift = (long) commonScale - scale;
+            long otherShift = (long) commonScale - other.scale;
+            if (shift <= LONG_PRECISION && otherShift <= LONG_PRECISION) {
+                long left = unscaled * POWERS_OF_TEN[(int) shift];
+                long right = other.unscaled * POWERS_OF_TEN[(int) otherShift];
+                if (!overflows(unscaled, POWERS_OF_TEN[(int) shift], left)
+                        && !overflows(other.unscaled, POWERS_OF_TEN[(int) otherShift], right)) {
+                    return Long.compare(left, right);
+                }
+            }
+        }
+        return toBigDecimal().compareTo(other.toBigDecimal());
+    }
+
+    // BigDecimal.equals, the scale counts
+    public boolean equalsDecimal(ScaledDecimal other) {
+        resolve();
+        other.resolve();
+        if (decimal == null && other.decimal == null) {
+            return unscaled == other.unscaled && scale == other.scale;
+        }
+        return toBigDecimal().equals(other.toBigDecimal());
+    }
+
+}
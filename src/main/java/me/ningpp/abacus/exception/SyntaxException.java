@@ -25,4 +25,9 @@ public class SyntaxException extends RuntimeException {
         super(message, cause);
     }
 
+    // without a stack trace when writableStackTrace is false, it is cheaper to throw then
+    public SyntaxException(String message, Throwable cause, boolean writableStackTrace) {
+        super(message, cause, true, writableStackTrace);
+    }
+
 }
@@ -19,4 +19,13 @@ public interface AbacusMethod {
 
     Object execute(Object[] args);
 
+    default boolean isPure() {
+        return false;
+    }
+
+    // the arguments are only used as decimals, so numbers may be passed already converted to BigDecimals
+    default boolean isNumeric() {
+        return false;
+    }
+
 }
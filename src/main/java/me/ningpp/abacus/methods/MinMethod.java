@@ -15,10 +15,22 @@
  */
 package me.ningpp.abacus.methods;
 
+import me.ningpp.abacus.calculator.ArithmeticCalculator;
+
 import java.math.BigDecimal;
 
 public class MinMethod implements AbacusMethod {
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
+    @Override
+    public boolean isNumeric() {
+        return true;
+    }
+
     @Override
     public Object execute(Object[] args) {
         if (args == null || args.length < 2) {
@@ -27,7 +39,7 @@ public class MinMethod implements AbacusMethod {
         BigDecimal[] decimals = new BigDecimal[args.length];
         for (int i = 0; i < args.length; i++) {
             Object arg = args[i];
-            decimals[i] = arg instanceof BigDecimal darg ? darg : arg == null ? null : new BigDecimal(arg.toString());
+            decimals[i] = arg instanceof BigDecimal darg ? darg : arg == null ? null : toDecimal(arg);
         }
         return min(decimals);
     }
@@ -45,4 +57,9 @@ public class MinMethod implements AbacusMethod {
         return min;
     }
 
+    private static BigDecimal toDecimal(Object arg) {
+        BigDecimal decimal = ArithmeticCalculator.numberToDecimal(arg);
+        return decimal != null ? decimal : new BigDecimal(arg.toString());
+    }
+
 }
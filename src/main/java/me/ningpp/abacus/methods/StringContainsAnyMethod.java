@@ -17,6 +17,11 @@ package me.ningpp.abacus.methods;
 
 public class StringContainsAnyMethod implements AbacusMethod {
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
     @Override
     public Object execute(Object[] args) {
         if (args == null || args.length < 2) {
@@ -0,0 +1,433 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus.parser;
+
+import me.ningpp.abacus.ExpressionDTO;
+import me.ningpp.abacus.ExpressionType;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A hand-written Pratt parser for {@code AbacusParser.g4}, it builds the same collapsed tree as the ANTLR parser
+ * with {@code ExpressionTreeBuilder}, nodes refer to spans of the source.
+ * It only accepts input the whole of which is one valid expression and gives up (returns null) on anything else,
+ * the ANTLR parser then reports the error, or parses what it can the way it always did.
+ */
+public final class PrattParser {
+
+    // binding powers of the infix operators, tokens that can't continue an expression have none
+    private static final int NONE = 0;
+    private static final int CONDITIONAL = 1;
+    private static final int OR = 2;
+    private static final int AND = 3;
+    private static final int EQUALITY = 4;
+    private static final int RELATIONAL = 5;
+    private static final int ADDITIVE = 6;
+    private static final int MULTIPLICATIVE = 7;
+
+    private static final GiveUp GIVE_UP = new GiveUp();
+
+    private final CharSequence source;
+    private final Tokenizer tokens;
+    // the names seen by recognize, either may be null
+    private final Set<String> variables;
+    private final Set<String> methods;
+
+    private PrattParser(CharSequence source, Set<String> variables, Set<String> methods) {
+        this.source = source;
+        this.tokens = new Tokenizer(source);
+        this.variables = variables;
+        this.methods = methods;
+    }
+
+    public static ExpressionDTO parse(CharSequence source) {
+        PrattParser parser = new PrattParser(source, null, null);
+        try {
+            ExpressionDTO result = parser.expression(NONE);
+            // ANTLR ignores what follows a complete expression, or reports it, leave that to it
+            return parser.tokens.type() == Tokenizer.EOF ? result : null;
+        } catch (GiveUp e) {
+            return null;
+        }
+    }
+
+    // checks the source the way parse does without building a tree: true when parse would return an expression,
+    // false when it would give up; variable and method names are added to the sets (if not null) on the way
+    public static boolean recognize(CharSequence source, Set<String> variables, Set<String> methods) {
+        PrattParser parser = new PrattParser(source, variables, methods);
+        try {
+            parser.skipExpression();
+            return parser.tokens.type() == Tokenizer.EOF;
+        } catch (GiveUp e) {
+            return false;
+        }
+    }
+
+    // precedence makes no difference to what is accepted, so operands and operators simply alternate,
+    // a conditional takes an expression between ? and :; the constructs still open are kept on a stack instead of
+    // the call stack, so nesting is only limited by memory
+    private void skipExpression() {
+        ArrayDeque<Integer> open = new ArrayDeque<>();
+        while (true) {
+            if (skipOperand(open)) {
+                continue;
+            }
+            while (true) {
+                int power = power(tokens.type());
+                if (power != NONE) {
+                    tokens.next();
+                    if (power == CONDITIONAL) {
+                        open.push(Tokenizer.COLON);
+                    }
+                    break;
+                }
+                // the innermost expression ends here, it must close what is open around it
+                if (open.isEmpty()) {
+                    return;
+                }
+                int closing = open.pop();
+                if (closing == Tokenizer.COLON) {
+                    expect(Tokenizer.COLON);
+                    break;
+                }
+                if (closing == Tokenizer.COMMA && tokens.type() == Tokenizer.COMMA) {
+                    tokens.next();
+                    open.push(Tokenizer.COMMA);
+                    break;
+                }
+                expect(Tokenizer.CLOSE_PARENS);
+            }
+        }
+    }
+
+    // skips the prefixes and the operand, true when it opened a parenthesis or arguments (what closes it is pushed)
+    // and an expression starts again
+    private boolean skipOperand(ArrayDeque<Integer> open) {
+        while (tokens.type() == Tokenizer.PLUS || tokens.type() == Tokenizer.MINUS
+                || tokens.type() == Tokenizer.TIMES || tokens.type() == Tokenizer.DIV) {
+            tokens.next();
+        }
+        switch (tokens.type()) {
+            case Tokenizer.NUMBER, Tokenizer.STRING_LITERAL:
+                tokens.next();
+                return false;
+            case Tokenizer.VARIABLE:
+                int start = tokens.start();
+                int stop = tokens.stop();
+                tokens.next();
+                if (tokens.type() != Tokenizer.OPEN_PARENS) {
+                    addName(variables, start, stop);
+                    return false;
+                }
+                addName(methods, start, stop);
+                tokens.next();
+                if (tokens.type() == Tokenizer.CLOSE_PARENS) {
+                    tokens.next();
+                    return false;
+                }
+                // arguments, separated by commas
+                open.push(Tokenizer.COMMA);
+                return true;
+            case Tokenizer.OPEN_PARENS:
+                tokens.next();
+                open.push(Tokenizer.CLOSE_PARENS);
+                return true;
+            default:
+                throw GIVE_UP;
+        }
+    }
+
+    private void addName(Set<String> names, int start, int stop) {
+        if (names != null) {
+            names.add(source.subSequence(start, stop).toString());
+        }
+    }
+
+    // parses operators that bind tighter than minPower, additive and multiplicative chains become one node,
+    // the other binary operators nest to the left; it works as the recursive descent would, with the calls still
+    // waiting for an operand kept on a stack instead of the call stack, so nesting is only limited by memory
+    private ExpressionDTO expression(int minPower) {
+        ArrayDeque<Frame> stack = new ArrayDeque<>();
+        stack.push(Frame.expression(tokens.start(), minPower));
+        ExpressionDTO value = operand(stack);
+        while (true) {
+            Frame frame = stack.peek();
+            switch (frame.kind) {
+                case Frame.UNARY -> {
+                    value = node(ExpressionType.ARITHMETIC, frame.start, children(frame.operator, value));
+                    stack.pop();
+                }
+                case Frame.PARENTHESIS -> {
+                    value = parenthesis(frame.start, value);
+                    stack.pop();
+                }
+                case Frame.INVOCATION -> {
+                    frame.chain.add(value);
+                    if (tokens.type() == Tokenizer.COMMA) {
+                        tokens.next();
+                        stack.push(Frame.expression(tokens.start(), NONE));
+                        value = operand(stack);
+                    } else {
+                        expect(Tokenizer.CLOSE_PARENS);
+                        value = node(ExpressionType.METHOD_INVOCATION, frame.start, frame.chain);
+                        stack.pop();
+                    }
+                }
+                default -> {
+                    if (!operator(frame, value)) {
+                        value = frame.chain == null ? frame.left
+                                : node(type(frame.chainPower), frame.start, frame.chain);
+                        stack.pop();
+                        if (stack.isEmpty()) {
+                            return value;
+                        }
+                    } else {
+                        stack.push(Frame.expression(tokens.start(), frame.power));
+                        value = operand(stack);
+                    }
+                }
+            }
+        }
+    }
+
+    // takes the operand the frame waits for, then the next operator that binds tighter than its minPower,
+    // false when there is none and the expression of the frame is complete
+    private boolean operator(Frame frame, ExpressionDTO operand) {
+        switch (frame.waiting) {
+            case Frame.CHAIN -> frame.chain.add(operand);
+            case Frame.RIGHT -> frame.left = node(type(frame.power), frame.start,
+                    children(frame.left, frame.operator, operand));
+            case Frame.THEN -> {
+                frame.operator = operand;
+                expect(Tokenizer.COLON);
+                frame.waiting = Frame.OTHERWISE;
+                frame.power = NONE;
+                return true;
+            }
+            case Frame.OTHERWISE -> frame.left = node(ExpressionType.CONDITIONAL, frame.start,
+                    children(frame.left, frame.operator, operand));
+            default -> frame.left = operand;
+        }
+        int power = power(tokens.type());
+        if (power <= frame.minPower) {
+            return false;
+        }
+        if (frame.chain != null && power != frame.chainPower) {
+            frame.left = node(type(frame.chainPower), frame.start, frame.chain);
+            frame.chain = null;
+        }
+        if (power == CONDITIONAL) {
+            tokens.next();
+            frame.waiting = Frame.THEN;
+            frame.power = NONE;
+        } else if (power == ADDITIVE || power == MULTIPLICATIVE) {
+            if (frame.chain == null) {
+                frame.chain = new ArrayList<>();
+                frame.chain.add(frame.left);
+                frame.chainPower = power;
+            }
+            frame.chain.add(symbol());
+            frame.waiting = Frame.CHAIN;
+            frame.power = power;
+        } else {
+            frame.operator = symbol();
+            frame.waiting = Frame.RIGHT;
+            frame.power = power;
+        }
+        return true;
+    }
+
+    // an operand without its operators: prefixes, parentheses and invocations are pushed until a number,
+    // a string, a variable or an invocation without arguments is reached, which is returned
+    private ExpressionDTO operand(ArrayDeque<Frame> stack) {
+        while (true) {
+            int start = tokens.start();
+            switch (tokens.type()) {
+                case Tokenizer.NUMBER:
+                    return number();
+                case Tokenizer.STRING_LITERAL:
+                    // without the quotes
+                    ExpressionDTO literal = new ExpressionDTO(source, start + 1, tokens.stop() - 1,
+                            ExpressionType.STRING_LITERAL, null);
+                    tokens.next();
+                    return literal;
+                case Tokenizer.VARIABLE:
+                    ExpressionDTO name = new ExpressionDTO(source, start, tokens.stop(), ExpressionType.VARIABLE, null);
+                    tokens.next();
+                    if (tokens.type() != Tokenizer.OPEN_PARENS) {
+                        return name;
+                    }
+                    // name ( [argument , ...] ), an invocation without arguments collapses to its name
+                    ExpressionDTO method = name.copy(null, ExpressionType.SYMBOL, null);
+                    tokens.next();
+                    if (tokens.type() == Tokenizer.CLOSE_PARENS) {
+                        tokens.next();
+                        return method;
+                    }
+                    stack.push(Frame.invocation(start, method));
+                    stack.push(Frame.expression(tokens.start(), NONE));
+                    break;
+                case Tokenizer.OPEN_PARENS:
+                    stack.push(Frame.parenthesis(start));
+                    tokens.next();
+                    stack.push(Frame.expression(tokens.start(), NONE));
+                    break;
+                case Tokenizer.PLUS, Tokenizer.MINUS, Tokenizer.TIMES, Tokenizer.DIV:
+                    stack.push(Frame.unary(start, symbol()));
+                    break;
+                default:
+                    throw GIVE_UP;
+            }
+        }
+    }
+
+    private ExpressionDTO number() {
+        int stop = tokens.stop();
+        if (source.charAt(stop - 1) == 'B') {
+            stop--;
+        }
+        ExpressionDTO dto = new ExpressionDTO(source, tokens.start(), stop, ExpressionType.NUMBER, null);
+        dto.setCalculatedValue(new BigDecimal(dto.getText()));
+        tokens.next();
+        return dto;
+    }
+
+    // nested parentheses merge, a parenthesized variable or number is the variable or number itself
+    private ExpressionDTO parenthesis(int start, ExpressionDTO inner) {
+        expect(Tokenizer.CLOSE_PARENS);
+        if (inner.getType() == ExpressionType.PARENTHESIS || inner.getType() == ExpressionType.VARIABLE
+                || inner.getType() == ExpressionType.NUMBER) {
+            return inner;
+        }
+        return node(ExpressionType.PARENTHESIS, start, children(inner));
+    }
+
+    private ExpressionDTO symbol() {
+        ExpressionDTO symbol = new ExpressionDTO(source, tokens.start(), tokens.stop(), ExpressionType.SYMBOL, null);
+        tokens.next();
+        return symbol;
+    }
+
+    private void expect(int type) {
+        if (tokens.type() != type) {
+            throw GIVE_UP;
+        }
+        tokens.next();
+    }
+
+    // from start to the end of the last token taken
+    private ExpressionDTO node(ExpressionType type, int start, List<ExpressionDTO> children) {
+        return new ExpressionDTO(source, start, tokens.lastStop(), type, children);
+    }
+
+    private static List<ExpressionDTO> children(ExpressionDTO... children) {
+        return new ArrayList<>(List.of(children));
+    }
+
+    private static int power(int tokenType) {
+        return switch (tokenType) {
+            case Tokenizer.QUESTION -> CONDITIONAL;
+            case Tokenizer.OP_OR -> OR;
+            case Tokenizer.OP_AND -> AND;
+            case Tokenizer.EQUAL, Tokenizer.NOTEQUAL -> EQUALITY;
+            case Tokenizer.GT, Tokenizer.LT, Tokenizer.LE, Tokenizer.GE -> RELATIONAL;
+            case Tokenizer.PLUS, Tokenizer.MINUS -> ADDITIVE;
+            case Tokenizer.TIMES, Tokenizer.DIV -> MULTIPLICATIVE;
+            default -> NONE;
+        };
+    }
+
+    private static ExpressionType type(int power) {
+        return switch (power) {
+            case OR -> ExpressionType.CONDITIONAL_OR;
+            case AND -> ExpressionType.CONDITIONAL_AND;
+            case EQUALITY -> ExpressionType.EQUALITY;
+            case RELATIONAL -> ExpressionType.RELATIONAL;
+            case ADDITIVE -> ExpressionType.ADDITIVE;
+            case MULTIPLICATIVE -> ExpressionType.MULTIPLICATIVE;
+            default -> throw new IllegalArgumentException(String.valueOf(power));
+        };
+    }
+
+    // a construct waiting for an operand: an expression call, a prefix operator, a parenthesis or arguments
+    private static final class Frame {
+        private static final int EXPRESSION = 0;
+        private static final int UNARY = 1;
+        private static final int PARENTHESIS = 2;
+        private static final int INVOCATION = 3;
+
+        // what the operand of an expression is for
+        private static final int LEFT = 0;
+        private static final int CHAIN = 1;
+        private static final int RIGHT = 2;
+        private static final int THEN = 3;
+        private static final int OTHERWISE = 4;
+
+        private final int kind;
+        private final int start;
+        private final int minPower;
+        private int waiting = LEFT;
+        // the power the pending operand is parsed with
+        private int power;
+        private ExpressionDTO left;
+        // the operator of a binary operation or a prefix, the then value of a conditional
+        private ExpressionDTO operator;
+        // the chain of an expression, the children of an invocation
+        private List<ExpressionDTO> chain;
+        private int chainPower = NONE;
+
+        private Frame(int kind, int start, int minPower) {
+            this.kind = kind;
+            this.start = start;
+            this.minPower = minPower;
+        }
+
+        private static Frame expression(int start, int minPower) {
+            return new Frame(EXPRESSION, start, minPower);
+        }
+
+        private static Frame unary(int start, ExpressionDTO operator) {
+            Frame frame = new Frame(UNARY, start, NONE);
+            frame.operator = operator;
+            return frame;
+        }
+
+        private static Frame parenthesis(int start) {
+            return new Frame(PARENTHESIS, start, NONE);
+        }
+
+        private static Frame invocation(int start, ExpressionDTO method) {
+            Frame frame = new Frame(INVOCATION, start, NONE);
+            frame.chain = new ArrayList<>();
+            frame.chain.add(method);
+            return frame;
+        }
+    }
+
+    // thrown to give up, shared and without a stack trace, it is no error
+    private static final class GiveUp extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private GiveUp() {
+            super(null, null, false, false);
+        }
+    }
+
+}
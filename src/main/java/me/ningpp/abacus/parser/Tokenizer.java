@@ -0,0 +1,248 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus.parser;
+
+/**
+ * A hand-written lexer for the tokens of {@code AbacusLexer.g4} that the parser uses, one token at a time.
+ * Blanks and comments are skipped. Everything else, including input ANTLR would report and skip,
+ * becomes an {@link #ERROR} token.
+ */
+final class Tokenizer {
+
+    static final int EOF = 0;
+    static final int ERROR = 1;
+    static final int OPEN_PARENS = 2;
+    static final int CLOSE_PARENS = 3;
+    static final int COMMA = 4;
+    static final int PLUS = 5;
+    static final int MINUS = 6;
+    static final int TIMES = 7;
+    static final int DIV = 8;
+    static final int OP_AND = 9;
+    static final int OP_OR = 10;
+    static final int GT = 11;
+    static final int LT = 12;
+    static final int EQUAL = 13;
+    static final int NOTEQUAL = 14;
+    static final int LE = 15;
+    static final int GE = 16;
+    static final int QUESTION = 17;
+    static final int COLON = 18;
+    static final int VARIABLE = 19;
+    static final int NUMBER = 20;
+    static final int STRING_LITERAL = 21;
+
+    private final CharSequence source;
+    private final int length;
+    private int position;
+    // the current token, stop is exclusive
+    private int type;
+    private int start;
+    private int stop;
+    // the end of the token before the current one
+    private int lastStop;
+
+    Tokenizer(CharSequence source) {
+        this.source = source;
+        this.length = source.length();
+        next();
+    }
+
+    int type() {
+        return type;
+    }
+
+    int start() {
+        return start;
+    }
+
+    int stop() {
+        return stop;
+    }
+
+    int lastStop() {
+        return lastStop;
+    }
+
+    char charAt(int index) {
+        return source.charAt(index);
+    }
+
+    void next() {
+        lastStop = stop;
+        if (!skipBlanksAndComments()) {
+            start = position;
+            type = ERROR;
+            stop = position;
+            return;
+        }
+        start = position;
+        type = position == length ? EOF : scan();
+        stop = position;
+    }
+
+    // false for a comment that isn't closed
+    private boolean skipBlanksAndComments() {
+        while (position < length) {
+            char c = source.charAt(position);
+            if (c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '\f') {
+                position++;
+            } else if (c == '/' && position + 1 < length && source.charAt(position + 1) == '*') {
+                int end = commentEnd(position + 2);
+                if (end < 0) {
+                    return false;
+                }
+                position = end + 2;
+            } else if (c == '/' && position + 1 < length && source.charAt(position + 1) == '/') {
+                position += 2;
+                while (position < length && source.charAt(position) != '\r' && source.charAt(position) != '\n') {
+                    position++;
+                }
+            } else {
+                break;
+            }
+        }
+        return true;
+    }
+
+    // the index of the next */
+    private int commentEnd(int from) {
+        for (int i = from; i + 1 < length; i++) {
+            if (source.charAt(i) == '*' && source.charAt(i + 1) == '/') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int scan() {
+        char c = source.charAt(position++);
+        switch (c) {
+            case '(':
+                return OPEN_PARENS;
+            case ')':
+                return CLOSE_PARENS;
+            case ',':
+                return COMMA;
+            case '+':
+                return PLUS;
+            case '-':
+                return MINUS;
+            case '*':
+                return TIMES;
+            case '/':
+                return DIV;
+            case '?':
+                return QUESTION;
+            case ':':
+                return COLON;
+            case '&':
+                return match('&') ? OP_AND : ERROR;
+            case '|':
+                return match('|') ? OP_OR : ERROR;
+            case '=':
+                return match('=') ? EQUAL : ERROR;
+            case '!':
+                return match('=') ? NOTEQUAL : ERROR;
+            case '>':
+                return match('=') ? GE : GT;
+            case '<':
+                return match('=') ? LE : LT;
+            case '"':
+                return stringLiteral();
+            default:
+                if (c >= '0' && c <= '9') {
+                    return number();
+                } else if (IdentifierChars.isStart(c)) {
+                    while (position < length && IdentifierChars.isPart(source.charAt(position))) {
+                        position++;
+                    }
+                    return VARIABLE;
+                }
+                return ERROR;
+        }
+    }
+
+    private boolean match(char c) {
+        if (position < length && source.charAt(position) == c) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    // [0-9]+ ('.' [0-9]+)? 'B'?
+    private int number() {
+        skipDigits();
+        if (position + 1 < length && source.charAt(position) == '.' && isDigit(source.charAt(position + 1))) {
+            position++;
+            skipDigits();
+        }
+        match('B');
+        return NUMBER;
+    }
+
+    private void skipDigits() {
+        while (position < length && isDigit(source.charAt(position))) {
+            position++;
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isHexDigit(char c) {
+        return isDigit(c) || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F';
+    }
+
+    // '"' (~["\\\r\n] | EscapeSequence)* '"', escapes are checked but kept as they are
+    private int stringLiteral() {
+        while (position < length) {
+            char c = source.charAt(position++);
+            if (c == '"') {
+                return STRING_LITERAL;
+            } else if (c == '\r' || c == '\n' || c == '\\' && !escapeSequence()) {
+                return ERROR;
+            }
+        }
+        return ERROR;
+    }
+
+    private boolean escapeSequence() {
+        if (position == length) {
+            return false;
+        }
+        char c = source.charAt(position++);
+        if ("btnfr\"'\\".indexOf(c) >= 0 || c >= '0' && c <= '7') {
+            // the digits after the first one of an octal escape are plain string characters anyway
+            return true;
+        } else if (c != 'u') {
+            return false;
+        }
+        while (position < length && source.charAt(position) == 'u') {
+            position++;
+        }
+        for (int i = 0; i < 4; i++) {
+            if (position == length || !isHexDigit(source.charAt(position))) {
+                return false;
+            }
+            position++;
+        }
+        return true;
+    }
+
+}
@@ -15,19 +15,16 @@
  */
 package me.ningpp.abacus.translator;
 
-import me.ningpp.abacus.AbacusParser.AdditiveExpressionContext;
 import me.ningpp.abacus.ExpressionDTO;
 import me.ningpp.abacus.ExpressionType;
+import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.tree.ParseTree;
 
 public class AdditiveTranslator implements Translator {
 
     @Override
-    public ExpressionDTO translate(ParseTree node) {
-        if (! (node instanceof AdditiveExpressionContext)) {
-            return null;
-        }
-        return new ExpressionDTO(node.getText(), ExpressionType.ADDITIVE);
+    public ExpressionDTO translate(ParseTree node, SourceText source) {
+        return source.span((ParserRuleContext) node, ExpressionType.ADDITIVE);
     }
 
 }
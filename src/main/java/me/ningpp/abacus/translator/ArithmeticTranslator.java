@@ -15,26 +15,16 @@
  */
 package me.ningpp.abacus.translator;
 
-import me.ningpp.abacus.AbacusParser.ArithmeticExpressionContext;
 import me.ningpp.abacus.ExpressionDTO;
 import me.ningpp.abacus.ExpressionType;
+import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.tree.ParseTree;
 
-import java.util.Arrays;
-
 public class ArithmeticTranslator implements Translator {
 
     @Override
-    public ExpressionDTO translate(ParseTree node) {
-        if (!(node instanceof ArithmeticExpressionContext)) {
-            return null;
-        }
-        ArithmeticExpressionContext aeCtx = (ArithmeticExpressionContext) node;
-        return new ExpressionDTO(node.getText(), ExpressionType.ARITHMETIC,
-                Arrays.asList(
-                        new ArithmeticOperatorTranslator().translate(aeCtx.arithmeticOperator()),
-                        TranslatorUtil.translate(aeCtx.unaryExpression())
-                ));
+    public ExpressionDTO translate(ParseTree node, SourceText source) {
+        return source.span((ParserRuleContext) node, ExpressionType.ARITHMETIC);
     }
 
 }
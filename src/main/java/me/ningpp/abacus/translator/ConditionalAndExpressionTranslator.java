@@ -15,34 +15,16 @@
  */
 package me.ningpp.abacus.translator;
 
-import me.ningpp.abacus.AbacusParser.ConditionalAndExpressionContext;
 import me.ningpp.abacus.ExpressionDTO;
 import me.ningpp.abacus.ExpressionType;
+import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.tree.ParseTree;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
-
 public class ConditionalAndExpressionTranslator implements Translator {
 
     @Override
-    public ExpressionDTO translate(ParseTree node) {
-        if (!(node instanceof ConditionalAndExpressionContext caeCtx)) {
-            return null;
-        }
-
-        ExpressionDTO dto = new ExpressionDTO();
-        dto.setType(ExpressionType.CONDITIONAL_AND);
-        dto.setText(node.getText());
-
-        List<ExpressionDTO> children = new ArrayList<>();
-        children.add(TranslatorUtil.translate(caeCtx.equalityExpression()));
-        children.add(TranslatorUtil.translate(caeCtx.OP_AND()));
-        children.add(TranslatorUtil.translate(caeCtx.conditionalAndExpression()));
-
-        dto.setChildren(children.stream().filter(Objects::nonNull).toList());
-        return dto;
+    public ExpressionDTO translate(ParseTree node, SourceText source) {
+        return source.span((ParserRuleContext) node, ExpressionType.CONDITIONAL_AND);
     }
 
 }
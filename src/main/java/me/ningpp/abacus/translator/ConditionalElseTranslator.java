@@ -15,28 +15,16 @@
  */
 package me.ningpp.abacus.translator;
 
-import me.ningpp.abacus.AbacusParser.ConditionalElseContext;
 import me.ningpp.abacus.ExpressionDTO;
 import me.ningpp.abacus.ExpressionType;
+import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.tree.ParseTree;
 
-import java.util.List;
-
 public class ConditionalElseTranslator implements Translator {
 
     @Override
-    public ExpressionDTO translate(ParseTree node) {
-        if (!(node instanceof ConditionalElseContext ctCtx)) {
-            return null;
-        }
-
-        ExpressionDTO dto = new ExpressionDTO();
-        dto.setType(ExpressionType.CONDITIONAL_ELSE);
-        dto.setText(node.getText());
-        dto.setChildren(List.of(
-                TranslatorUtil.translate(ctCtx.conditionalExpression())
-        ));
-        return dto;
+    public ExpressionDTO translate(ParseTree node, SourceText source) {
+        return source.span((ParserRuleContext) node, ExpressionType.CONDITIONAL_ELSE);
     }
 
 }
@@ -15,12 +15,10 @@
  */
 package me.ningpp.abacus.translator;
 
-import me.ningpp.abacus.AbacusParser.ConditionalConditionContext;
-import me.ningpp.abacus.AbacusParser.ConditionalElseContext;
 import me.ningpp.abacus.AbacusParser.ConditionalExpressionContext;
-import me.ningpp.abacus.AbacusParser.ConditionalThenContext;
 import me.ningpp.abacus.ExpressionDTO;
 import me.ningpp.abacus.ExpressionType;
+import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.tree.ParseTree;
 
 import java.util.List;
@@ -28,32 +26,29 @@ import java.util.List;
 public class ConditionalExpressionTranslator implements Translator {
 
     @Override
-    public ExpressionDTO translate(ParseTree node) {
-        if (! (node instanceof ConditionalExpressionContext ceCtx)) {
+    public ExpressionDTO translate(ParseTree node, SourceText source) {
+        ConditionalExpressionContext ceCtx = (ConditionalExpressionContext) node;
+        if (ceCtx.conditionalOrExpression() != null) {
+            // not a conditional, replaced by the translation of conditionalOrExpression
             return null;
         }
+        return source.span((ParserRuleContext) node, ExpressionType.CONDITIONAL);
+    }
 
-        ExpressionDTO dto = new ExpressionDTO();
-        dto.setType(ExpressionType.CONDITIONAL);
-        dto.setText(node.getText());
-
-        ConditionalConditionContext conditionCtx = ceCtx.conditionalCondition();
-        ConditionalThenContext thenCtx = ceCtx.conditionalThen();
-        ConditionalElseContext elseCtx = ceCtx.conditionalElse();
-
-        if (conditionCtx != null && thenCtx != null && elseCtx != null) {
-            dto.setChildren(List.of(
-                    // first  child is condition
-                    TranslatorUtil.translate(ceCtx.conditionalCondition()),
-                    // second child is thenExpr
-                    TranslatorUtil.translate(ceCtx.conditionalThen()),
-                    // third  child is elseExpr
-                    TranslatorUtil.translate(ceCtx.conditionalElse())
-            ));
-        } else {
-            return TranslatorUtil.translate(ceCtx.conditionalOrExpression());
+    @Override
+    public List<ParseTree> children(ParseTree node) {
+        ConditionalExpressionContext ceCtx = (ConditionalExpressionContext) node;
+        if (ceCtx.conditionalOrExpression() != null) {
+            return List.of(ceCtx.conditionalOrExpression());
         }
-        return dto;
+        return List.of(
+                // first  child is condition
+                ceCtx.conditionalCondition(),
+                // second child is thenExpr
+                ceCtx.conditionalThen(),
+                // third  child is elseExpr
+                ceCtx.conditionalElse()
+        );
     }
 
 }
@@ -15,40 +15,16 @@
  */
 package me.ningpp.abacus.translator;
 
-import me.ningpp.abacus.AbacusParser.EqualityExpressionContext;
 import me.ningpp.abacus.ExpressionDTO;
 import me.ningpp.abacus.ExpressionType;
+import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.tree.ParseTree;
-import org.antlr.v4.runtime.tree.TerminalNode;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
 
 public class EqualityExpressionTranslator implements Translator {
 
     @Override
-    public ExpressionDTO translate(ParseTree node) {
-        if (!(node instanceof EqualityExpressionContext eeCtx)) {
-            return null;
-        }
-
-        ExpressionDTO dto = new ExpressionDTO();
-        dto.setType(ExpressionType.EQUALITY);
-        dto.setText(node.getText());
-        TerminalNode symbol = eeCtx.EQUAL();
-        if (symbol == null) {
-            symbol = eeCtx.NOTEQUAL();
-        }
-
-        List<ExpressionDTO> children = new ArrayList<>();
-        children.add(TranslatorUtil.translate(eeCtx.equalityExpression()));
-        children.add(TranslatorUtil.translate(symbol));
-        children.add(TranslatorUtil.translate(eeCtx.relationalExpression()));
-
-        dto.setChildren(children.stream().filter(Objects::nonNull).toList());
-
-        return dto;
+    public ExpressionDTO translate(ParseTree node, SourceText source) {
+        return source.span((ParserRuleContext) node, ExpressionType.EQUALITY);
     }
 
 }
@@ -0,0 +1,229 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus.translator;
+
+import me.ningpp.abacus.AbacusParser;
+import me.ningpp.abacus.ExpressionDTO;
+import me.ningpp.abacus.ExpressionType;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A parse listener that builds the collapsed expression tree while the parser runs, so no parse tree
+ * (see {@code Parser#setBuildParseTree(false)}) and no uncollapsed tree is built.
+ * The result is the same as {@link TranslatorUtil#translate} followed by {@code CollapseUtil#collapse}.
+ * Finished rules and matched tokens wait on a stack, a rule takes the entries that start inside it
+ * as its children when it exits; rules that would be collapsed away leave their single child there.
+ * Nodes refer to their span of the {@link SourceText}, no text is copied while parsing.
+ */
+public final class ExpressionTreeBuilder implements ParseTreeListener {
+
+    private final Parser parser;
+    private final TokenStream tokens;
+    private final SourceText source;
+    private Object[] values = new Object[64];
+    private int[] starts = new int[64];
+    private int size;
+    private boolean broken;
+
+    public ExpressionTreeBuilder(Parser parser, SourceText source) {
+        this.parser = parser;
+        this.tokens = parser.getTokenStream();
+        this.source = source;
+    }
+
+    public void reset() {
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+        broken = false;
+    }
+
+    public ExpressionDTO getResult() {
+        return !broken && size == 1 && values[0] instanceof ExpressionDTO result ? result : null;
+    }
+
+    @Override
+    public void visitTerminal(TerminalNode node) {
+        Token token = node.getSymbol();
+        push(token, token.getTokenIndex());
+    }
+
+    @Override
+    public void visitErrorNode(ErrorNode node) {
+        // syntax errors are thrown before the parser recovers
+    }
+
+    @Override
+    public void enterEveryRule(ParserRuleContext ctx) {
+        // everything happens when the rule exits
+    }
+
+    @Override
+    public void exitEveryRule(ParserRuleContext ctx) {
+        // rules also exit while a syntax error unwinds the parser, the error must get through unchanged
+        if (broken || ctx.exception != null || parser.getNumberOfSyntaxErrors() > 0) {
+            return;
+        }
+        if (ctx.start == null) {
+            // a rule the parser overflowed the stack in before it took its first token
+            broken = true;
+            return;
+        }
+        int start = ctx.start.getTokenIndex();
+        int from = size;
+        while (from > 0 && starts[from - 1] >= start) {
+            from--;
+        }
+        ExpressionDTO result;
+        try {
+            result = build(ctx.getRuleIndex(), from, start);
+        } catch (RuntimeException e) {
+            // so do unfinished rules while any other error (a StackOverflowError on deep nesting) unwinds it
+            broken = true;
+            return;
+        }
+        if (result != null) {
+            Arrays.fill(values, from, size, null);
+            size = from;
+            push(result, start);
+        }
+    }
+
+    // null leaves the children on the stack, that is how pass-through rules collapse
+    private ExpressionDTO build(int ruleIndex, int from, int start) {
+        int count = size - from;
+        switch (ruleIndex) {
+            case AbacusParser.RULE_scientific:
+                return number(token(from));
+            case AbacusParser.RULE_variable:
+                return source.span(token(from), token(from), ExpressionType.VARIABLE);
+            case AbacusParser.RULE_literal:
+                // without the quotes
+                Token literal = token(from);
+                return source.span(literal.getStartIndex() + 1, literal.getStopIndex(), ExpressionType.STRING_LITERAL);
+            case AbacusParser.RULE_parenthesisExpression:
+                return parenthesis((ExpressionDTO) values[from + 1], start);
+            case AbacusParser.RULE_arithmeticExpression:
+                return node(ExpressionType.ARITHMETIC, from, start);
+            case AbacusParser.RULE_invocationExpression:
+                // name ( [argument , ...] ), an invocation without arguments collapses to its name
+                return count == 3 ? symbol(token(from)) : node(ExpressionType.METHOD_INVOCATION, from, start);
+            case AbacusParser.RULE_conditionalExpression:
+                return count == 1 ? null : node(ExpressionType.CONDITIONAL, from, start);
+            case AbacusParser.RULE_conditionalOrExpression:
+                return binary(ExpressionType.CONDITIONAL_OR, from, count, start);
+            case AbacusParser.RULE_conditionalAndExpression:
+                return binary(ExpressionType.CONDITIONAL_AND, from, count, start);
+            case AbacusParser.RULE_equalityExpression:
+                return binary(ExpressionType.EQUALITY, from, count, start);
+            case AbacusParser.RULE_relationalExpression:
+                return binary(ExpressionType.RELATIONAL, from, count, start);
+            case AbacusParser.RULE_additiveExpression:
+                return binary(ExpressionType.ADDITIVE, from, count, start);
+            case AbacusParser.RULE_multiplicativeExpression:
+                return binary(ExpressionType.MULTIPLICATIVE, from, count, start);
+            default:
+                // expression, unaryExpression, primaryExpression, conditionalCondition, conditionalThen,
+                // conditionalElse, argumentList, methodName and arithmeticOperator pass their children through
+                return null;
+        }
+    }
+
+    private ExpressionDTO binary(ExpressionType type, int from, int count, int start) {
+        return count == 1 ? null : node(type, from, start);
+    }
+
+    // spans from the start token to the last token the parser matched
+    private ExpressionDTO node(ExpressionType type, int from, int start) {
+        ExpressionDTO dto = source.span(tokens.get(start), tokens.LT(-1), type);
+        dto.setChildren(children(from));
+        return dto;
+    }
+
+    // rule results and operators (and method names) in source order, punctuation is dropped
+    private List<ExpressionDTO> children(int from) {
+        List<ExpressionDTO> children = new ArrayList<>(size - from);
+        for (int i = from; i < size; i++) {
+            Object value = values[i];
+            if (value instanceof ExpressionDTO dto) {
+                children.add(dto);
+            } else if (isOperator((Token) value)) {
+                children.add(symbol((Token) value));
+            }
+        }
+        return children;
+    }
+
+    private static boolean isOperator(Token token) {
+        return switch (token.getType()) {
+            case AbacusParser.OPEN_PARENS, AbacusParser.CLOSE_PARENS, AbacusParser.COMMA,
+                 AbacusParser.QUESTION, AbacusParser.COLON -> false;
+            default -> true;
+        };
+    }
+
+    private ExpressionDTO parenthesis(ExpressionDTO inner, int start) {
+        if (inner.getType() == ExpressionType.PARENTHESIS) {
+            return inner.copy(inner.getCalculatedValue(), ExpressionType.PARENTHESIS, inner.getChildren());
+        } else if (inner.getType() == ExpressionType.VARIABLE || inner.getType() == ExpressionType.NUMBER) {
+            return inner.copy(inner.getCalculatedValue(), inner.getType(), inner.getChildren());
+        }
+        ExpressionDTO dto = source.span(tokens.get(start), tokens.LT(-1), ExpressionType.PARENTHESIS);
+        List<ExpressionDTO> children = new ArrayList<>(1);
+        children.add(inner);
+        dto.setChildren(children);
+        return dto;
+    }
+
+    private ExpressionDTO number(Token token) {
+        int stop = token.getStopIndex() + 1;
+        if (source.charAt(stop - 1) == 'B') {
+            stop--;
+        }
+        ExpressionDTO dto = source.span(token.getStartIndex(), stop, ExpressionType.NUMBER);
+        dto.setCalculatedValue(new BigDecimal(dto.getText()));
+        return dto;
+    }
+
+    private ExpressionDTO symbol(Token token) {
+        return source.span(token, token, ExpressionType.SYMBOL);
+    }
+
+    private Token token(int i) {
+        return (Token) values[i];
+    }
+
+    private void push(Object value, int start) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            starts = Arrays.copyOf(starts, size * 2);
+        }
+        values[size] = value;
+        starts[size] = start;
+        size++;
+    }
+
+}
@@ -16,40 +16,32 @@
 package me.ningpp.abacus.translator;
 
 import me.ningpp.abacus.AbacusParser.ArgumentListContext;
-import me.ningpp.abacus.AbacusParser.ExpressionContext;
 import me.ningpp.abacus.AbacusParser.InvocationExpressionContext;
 import me.ningpp.abacus.ExpressionDTO;
 import me.ningpp.abacus.ExpressionType;
+import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.tree.ParseTree;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 
 public class InvocationExpressionTranslator implements Translator {
 
     @Override
-    public ExpressionDTO translate(ParseTree node) {
-        if (!(node instanceof InvocationExpressionContext ieCtx)) {
-            return null;
-        }
-        ExpressionDTO dto = new ExpressionDTO();
-        dto.setType(ExpressionType.METHOD_INVOCATION);
-        dto.setText(node.getText());
-        List<ExpressionDTO> children = new ArrayList<>();
-        children.add(TranslatorUtil.translate(ieCtx.methodName().VARIABLE()));
+    public ExpressionDTO translate(ParseTree node, SourceText source) {
+        return source.span((ParserRuleContext) node, ExpressionType.METHOD_INVOCATION);
+    }
+
+    @Override
+    public List<ParseTree> children(ParseTree node) {
+        InvocationExpressionContext ieCtx = (InvocationExpressionContext) node;
+        List<ParseTree> children = new ArrayList<>();
+        children.add(ieCtx.methodName().VARIABLE());
         ArgumentListContext argList = ieCtx.argumentList();
         if (argList != null) {
-            List<ExpressionContext> argExprs = argList.expression();
-            if (argExprs != null) {
-                for (ExpressionContext expCtx : argExprs) {
-                    children.add(TranslatorUtil.translate(expCtx));
-                }
-            }
+            children.addAll(argList.expression());
         }
-
-        dto.setChildren(children.stream().filter(Objects::nonNull).toList());
-        return dto;
+        return children;
     }
 
 }
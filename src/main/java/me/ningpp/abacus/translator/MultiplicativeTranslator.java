@@ -15,18 +15,16 @@
  */
 package me.ningpp.abacus.translator;
 
-import me.ningpp.abacus.AbacusParser.MultiplicativeExpressionContext;
 import me.ningpp.abacus.ExpressionDTO;
 import me.ningpp.abacus.ExpressionType;
+import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.tree.ParseTree;
 
 public class MultiplicativeTranslator implements Translator {
 
     @Override
-    public ExpressionDTO translate(ParseTree node) {
-        if (! (node instanceof MultiplicativeExpressionContext)) {
-            return null;
-        }
-        return new ExpressionDTO(node.getText(), ExpressionType.MULTIPLICATIVE);
+    public ExpressionDTO translate(ParseTree node, SourceText source) {
+        return source.span((ParserRuleContext) node, ExpressionType.MULTIPLICATIVE);
     }
+
 }
@@ -18,6 +18,7 @@ package me.ningpp.abacus.translator;
 import me.ningpp.abacus.AbacusParser.ParenthesisExpressionContext;
 import me.ningpp.abacus.ExpressionDTO;
 import me.ningpp.abacus.ExpressionType;
+import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.tree.ParseTree;
 
 import java.util.List;
@@ -25,14 +26,13 @@ import java.util.List;
 public class ParenthesisTranslator implements Translator {
 
     @Override
-    public ExpressionDTO translate(ParseTree node) {
-        if (!(node instanceof ParenthesisExpressionContext peCtx)) {
-            return null;
-        }
-        return new ExpressionDTO(node.getText(),
-                ExpressionType.PARENTHESIS,
-                List.of(TranslatorUtil.translate(peCtx.expression()))
-        );
+    public ExpressionDTO translate(ParseTree node, SourceText source) {
+        return source.span((ParserRuleContext) node, ExpressionType.PARENTHESIS);
+    }
+
+    @Override
+    public List<ParseTree> children(ParseTree node) {
+        return List.of(((ParenthesisExpressionContext) node).expression());
     }
 
 }
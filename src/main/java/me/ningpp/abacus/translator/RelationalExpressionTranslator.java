@@ -15,45 +15,16 @@
  */
 package me.ningpp.abacus.translator;
 
-import me.ningpp.abacus.AbacusParser.RelationalExpressionContext;
 import me.ningpp.abacus.ExpressionDTO;
 import me.ningpp.abacus.ExpressionType;
+import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.tree.ParseTree;
-import org.antlr.v4.runtime.tree.TerminalNode;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
 
 public class RelationalExpressionTranslator implements Translator {
 
     @Override
-    public ExpressionDTO translate(ParseTree node) {
-        if (!(node instanceof RelationalExpressionContext reCtx)) {
-            return null;
-        }
-
-        ExpressionDTO dto = new ExpressionDTO();
-        dto.setType(ExpressionType.RELATIONAL);
-        dto.setText(node.getText());
-        TerminalNode symbol = reCtx.LT();
-        if (symbol == null) {
-            symbol = reCtx.GT();
-        }
-        if (symbol == null) {
-            symbol = reCtx.LE();
-        }
-        if (symbol == null) {
-            symbol = reCtx.GE();
-        }
-
-        List<ExpressionDTO> children = new ArrayList<>();
-        children.add(TranslatorUtil.translate(reCtx.relationalExpression()));
-        children.add(TranslatorUtil.translate(symbol));
-        children.add(TranslatorUtil.translate(reCtx.additiveExpression()));
-
-        dto.setChildren(children.stream().filter(Objects::nonNull).toList());
-        return dto;
+    public ExpressionDTO translate(ParseTree node, SourceText source) {
+        return source.span((ParserRuleContext) node, ExpressionType.RELATIONAL);
     }
 
 }
@@ -18,23 +18,29 @@ package me.ningpp.abacus.translator;
 import me.ningpp.abacus.AbacusParser.ScientificContext;
 import me.ningpp.abacus.ExpressionDTO;
 import me.ningpp.abacus.ExpressionType;
+import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.tree.ParseTree;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 public class ScientificTranslator implements Translator {
 
     @Override
-    public ExpressionDTO translate(ParseTree node) {
-        if (! (node instanceof ScientificContext)) {
-            return null;
+    public ExpressionDTO translate(ParseTree node, SourceText source) {
+        Token token = ((ScientificContext) node).SCIENTIFIC_NUMBER().getSymbol();
+        int stop = token.getStopIndex() + 1;
+        if (source.charAt(stop - 1) == 'B') {
+            stop--;
         }
-        String text = node.getText();
-        int last = text.length() - 1;
-        String numberStr = text.charAt(last) == 'B' ? text.substring(0, last) : text;
-        ExpressionDTO dto = new ExpressionDTO(numberStr, ExpressionType.NUMBER);
-        dto.setCalculatedValue(new BigDecimal(numberStr));
+        ExpressionDTO dto = source.span(token.getStartIndex(), stop, ExpressionType.NUMBER);
+        dto.setCalculatedValue(new BigDecimal(dto.getText()));
         return dto;
     }
 
+    @Override
+    public List<ParseTree> children(ParseTree node) {
+        return List.of();
+    }
+
 }
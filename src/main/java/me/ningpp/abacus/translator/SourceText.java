@@ -0,0 +1,90 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus.translator;
+
+import me.ningpp.abacus.ExpressionDTO;
+import me.ningpp.abacus.ExpressionType;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+
+/**
+ * The source of one parse. Tree nodes refer to spans of it instead of copying their text,
+ * token indexes of ANTLR count code points and are turned into char indexes here.
+ */
+public final class SourceText {
+
+    private final CharSequence source;
+    // the char index of every code point index, null when the source has no surrogate pairs and both are equal
+    private final int[] charIndexes;
+
+    public SourceText(CharSequence source) {
+        this.source = source;
+        this.charIndexes = charIndexes(source);
+    }
+
+    private static int[] charIndexes(CharSequence source) {
+        int length = source.length();
+        int codePoints = Character.codePointCount(source, 0, length);
+        if (codePoints == length) {
+            return null;
+        }
+        int[] indexes = new int[codePoints + 1];
+        int charIndex = 0;
+        for (int i = 0; i < codePoints; i++) {
+            indexes[i] = charIndex;
+            charIndex += Character.charCount(Character.codePointAt(source, charIndex));
+        }
+        indexes[codePoints] = length;
+        return indexes;
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    // the number of code points
+    public int size() {
+        return charIndexes == null ? source.length() : charIndexes.length - 1;
+    }
+
+    public int codePointAt(int codePointIndex) {
+        return charIndexes == null ? source.charAt(codePointIndex)
+                : Character.codePointAt(source, charIndexes[codePointIndex]);
+    }
+
+    public int charIndex(int codePointIndex) {
+        return charIndexes == null ? codePointIndex : charIndexes[codePointIndex];
+    }
+
+    public char charAt(int codePointIndex) {
+        return source.charAt(charIndex(codePointIndex));
+    }
+
+    // from the first char of start to the last char of stop
+    public ExpressionDTO span(Token start, Token stop, ExpressionType type) {
+        return span(start.getStartIndex(), stop.getStopIndex() + 1, type);
+    }
+
+    public ExpressionDTO span(ParserRuleContext ctx, ExpressionType type) {
+        return span(ctx.start, ctx.stop == null ? ctx.start : ctx.stop, type);
+    }
+
+    // code point indexes, stop is exclusive
+    public ExpressionDTO span(int start, int stop, ExpressionType type) {
+        return new ExpressionDTO(source, charIndex(start), charIndex(stop), type, null);
+    }
+
+}
@@ -18,17 +18,23 @@ package me.ningpp.abacus.translator;
 import me.ningpp.abacus.AbacusParser.LiteralContext;
 import me.ningpp.abacus.ExpressionDTO;
 import me.ningpp.abacus.ExpressionType;
+import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.tree.ParseTree;
 
+import java.util.List;
+
 public class StringLiteralTranslator implements Translator {
 
     @Override
-    public ExpressionDTO translate(ParseTree node) {
-        if (!(node instanceof LiteralContext literalCtx)) {
-            return null;
-        }
-        String text = literalCtx.StringLiteral().getText();
-        return new ExpressionDTO(text.substring(1, text.length()-1), ExpressionType.STRING_LITERAL);
+    public ExpressionDTO translate(ParseTree node, SourceText source) {
+        Token token = ((LiteralContext) node).StringLiteral().getSymbol();
+        // without the quotes
+        return source.span(token.getStartIndex() + 1, token.getStopIndex(), ExpressionType.STRING_LITERAL);
+    }
+
+    @Override
+    public List<ParseTree> children(ParseTree node) {
+        return List.of();
     }
 
 }
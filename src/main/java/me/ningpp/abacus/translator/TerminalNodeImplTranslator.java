@@ -17,17 +17,23 @@ package me.ningpp.abacus.translator;
 
 import me.ningpp.abacus.ExpressionDTO;
 import me.ningpp.abacus.ExpressionType;
+import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.tree.ParseTree;
-import org.antlr.v4.runtime.tree.TerminalNodeImpl;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.util.List;
 
 public class TerminalNodeImplTranslator implements Translator {
 
     @Override
-    public ExpressionDTO translate(ParseTree node) {
-        if (! (node instanceof TerminalNodeImpl)) {
-            return null;
-        }
-        return new ExpressionDTO(node.getText(), ExpressionType.SYMBOL);
+    public ExpressionDTO translate(ParseTree node, SourceText source) {
+        Token token = ((TerminalNode) node).getSymbol();
+        return source.span(token, token, ExpressionType.SYMBOL);
+    }
+
+    @Override
+    public List<ParseTree> children(ParseTree node) {
+        return List.of();
     }
 
 }
@@ -18,8 +18,26 @@ package me.ningpp.abacus.translator;
 import me.ningpp.abacus.ExpressionDTO;
 import org.antlr.v4.runtime.tree.ParseTree;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Translates one kind of parse tree node, {@link TranslatorUtil} picks it by rule index.
+ * {@link #translate} returns the node without children, {@link TranslatorUtil} translates {@link #children}
+ * and sets them, so no translator recurses. A null node is replaced by the translation of its only child.
+ * Nodes refer to their span of the {@link SourceText} instead of copying their text.
+ */
 public interface Translator {
 
-    ExpressionDTO translate(ParseTree node);
+    ExpressionDTO translate(ParseTree node, SourceText source);
+
+    default List<ParseTree> children(ParseTree node) {
+        int childCount = node.getChildCount();
+        List<ParseTree> children = new ArrayList<>(childCount);
+        for (int i = 0; i < childCount; i++) {
+            children.add(node.getChild(i));
+        }
+        return children;
+    }
 
 }
@@ -15,91 +15,113 @@
  */
 package me.ningpp.abacus.translator;
 
+import me.ningpp.abacus.AbacusParser;
 import me.ningpp.abacus.ExpressionDTO;
-import me.ningpp.abacus.ExpressionType;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.tree.ParseTree;
-import org.apache.commons.collections4.CollectionUtils;
+import org.antlr.v4.runtime.tree.TerminalNode;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashSet;
+import java.util.Deque;
 import java.util.List;
-import java.util.Set;
 
 public final class TranslatorUtil {
 
     private TranslatorUtil() {
     }
 
-    private static final List<Translator> TRANSLATORS = new ArrayList<>();
+    private static final Translator[] TRANSLATORS = new Translator[AbacusParser.ruleNames.length];
+
+    private static final Translator TERMINAL_TRANSLATOR = new TerminalNodeImplTranslator();
 
     static {
-        TRANSLATORS.add(new ArithmeticOperatorTranslator());
-        TRANSLATORS.add(new TerminalNodeImplTranslator());
-        TRANSLATORS.add(new ScientificTranslator());
-        TRANSLATORS.add(new VariableTranslator());
-        TRANSLATORS.add(new StringLiteralTranslator());
-        TRANSLATORS.add(new MultiplicativeTranslator());
-        TRANSLATORS.add(new AdditiveTranslator());
-        TRANSLATORS.add(new UnaryTranslator());
-        TRANSLATORS.add(new PrimaryTranslator());
-        TRANSLATORS.add(new ArithmeticTranslator());
-        TRANSLATORS.add(new ParenthesisTranslator());
-        TRANSLATORS.add(new ConditionalExpressionTranslator());
-        TRANSLATORS.add(new ConditionalConditionTranslator());
-        TRANSLATORS.add(new ConditionalThenTranslator());
-        TRANSLATORS.add(new ConditionalElseTranslator());
-        TRANSLATORS.add(new ConditionalOrExpressionTranslator());
-        TRANSLATORS.add(new ConditionalAndExpressionTranslator());
-        TRANSLATORS.add(new EqualityExpressionTranslator());
-        TRANSLATORS.add(new RelationalExpressionTranslator());
-        TRANSLATORS.add(new ExpressionTranslator());
-        TRANSLATORS.add(new InvocationExpressionTranslator());
+        TRANSLATORS[AbacusParser.RULE_arithmeticOperator] = new ArithmeticOperatorTranslator();
+        TRANSLATORS[AbacusParser.RULE_scientific] = new ScientificTranslator();
+        TRANSLATORS[AbacusParser.RULE_variable] = new VariableTranslator();
+        TRANSLATORS[AbacusParser.RULE_literal] = new StringLiteralTranslator();
+        TRANSLATORS[AbacusParser.RULE_multiplicativeExpression] = new MultiplicativeTranslator();
+        TRANSLATORS[AbacusParser.RULE_additiveExpression] = new AdditiveTranslator();
+        TRANSLATORS[AbacusParser.RULE_unaryExpression] = new UnaryTranslator();
+        TRANSLATORS[AbacusParser.RULE_primaryExpression] = new PrimaryTranslator();
+        TRANSLATORS[AbacusParser.RULE_arithmeticExpression] = new ArithmeticTranslator();
+        TRANSLATORS[AbacusParser.RULE_parenthesisExpression] = new ParenthesisTranslator();
+        TRANSLATORS[AbacusParser.RULE_conditionalExpression] = new ConditionalExpressionTranslator();
+        TRANSLATORS[AbacusParser.RULE_conditionalCondition] = new ConditionalConditionTranslator();
+        TRANSLATORS[AbacusParser.RULE_conditionalThen] = new ConditionalThenTranslator();
+        TRANSLATORS[AbacusParser.RULE_conditionalElse] = new ConditionalElseTranslator();
+        TRANSLATORS[AbacusParser.RULE_conditionalOrExpression] = new ConditionalOrExpressionTranslator();
+        TRANSLATORS[AbacusParser.RULE_conditionalAndExpression] = new ConditionalAndExpressionTranslator();
+        TRANSLATORS[AbacusParser.RULE_equalityExpression] = new EqualityExpressionTranslator();
+        TRANSLATORS[AbacusParser.RULE_relationalExpression] = new RelationalExpressionTranslator();
+        TRANSLATORS[AbacusParser.RULE_expression] = new ExpressionTranslator();
+        TRANSLATORS[AbacusParser.RULE_invocationExpression] = new InvocationExpressionTranslator();
     }
 
+    // an explicit stack instead of recursion, deeply nested formulas can't overflow the thread stack
     public static ExpressionDTO translate(ParseTree node) {
         if (node == null) {
             return null;
         }
-        ExpressionDTO result = null;
-        for (Translator translator : TRANSLATORS) {
-            result = translator.translate(node);
-            if (result != null) {
-                break;
+        Token token = node instanceof TerminalNode terminal ? terminal.getSymbol() : ((ParserRuleContext) node).start;
+        return translate(node, token.getInputStream() instanceof SourceCharStream stream ? stream.getSourceText()
+                : new SourceText(token.getInputStream().toString()));
+    }
+
+    public static ExpressionDTO translate(ParseTree node, SourceText source) {
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame(node, source));
+        while (true) {
+            Frame frame = stack.peek();
+            if (frame.next < frame.pending.size()) {
+                stack.push(new Frame(frame.pending.get(frame.next++), source));
+                continue;
+            }
+            stack.pop();
+            ExpressionDTO result = frame.finish();
+            if (stack.isEmpty()) {
+                return result;
             }
+            stack.peek().children.add(result);
         }
+    }
 
-        if (result == null) {
+    private static Translator translator(ParseTree node) {
+        Translator translator = null;
+        if (node instanceof ParserRuleContext ctx) {
+            translator = TRANSLATORS[ctx.getRuleIndex()];
+        } else if (node instanceof TerminalNode) {
+            translator = TERMINAL_TRANSLATOR;
+        }
+        if (translator == null) {
             throw new IllegalStateException(node.getText() + "\t\t\t" + node.getClass().getSimpleName());
         }
+        return translator;
+    }
 
-        if (!ROOT_EXPRESSION_TYPES.contains(result.getType())
-                && CollectionUtils.isEmpty(result.getChildren())) {
-            int childCount = node.getChildCount();
-            List<ExpressionDTO> children = new ArrayList<>(childCount);
-            result.setChildren(children);
-            for (int i = 0; i < childCount; i++) {
-                ParseTree child = node.getChild(i);
-                children.add(translate(child));
+    private static final class Frame {
+        private final ExpressionDTO dto;
+        private final List<ParseTree> pending;
+        private final List<ExpressionDTO> children;
+        private int next;
+
+        private Frame(ParseTree node, SourceText source) {
+            Translator translator = translator(node);
+            this.dto = translator.translate(node, source);
+            this.pending = translator.children(node);
+            this.children = new ArrayList<>(pending.size());
+        }
+
+        private ExpressionDTO finish() {
+            if (dto == null) {
+                return children.get(0);
             }
+            if (!children.isEmpty()) {
+                dto.setChildren(children);
+            }
+            return dto;
         }
-        return result;
     }
 
-    private static final Set<ExpressionType> ROOT_EXPRESSION_TYPES = new HashSet<>(Arrays.asList(
-            ExpressionType.STRING_LITERAL,
-            ExpressionType.METHOD_INVOCATION,
-            ExpressionType.CONDITIONAL,
-            ExpressionType.CONDITIONAL_CONDITION,
-            ExpressionType.CONDITIONAL_THEN,
-            ExpressionType.CONDITIONAL_ELSE,
-            ExpressionType.CONDITIONAL_OR,
-            ExpressionType.CONDITIONAL_AND,
-            ExpressionType.RELATIONAL,
-
-            ExpressionType.VARIABLE,
-            ExpressionType.NUMBER,
-            ExpressionType.SYMBOL
-    ));
-
 }
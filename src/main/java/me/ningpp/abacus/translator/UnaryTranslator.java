@@ -15,31 +15,16 @@
  */
 package me.ningpp.abacus.translator;
 
-import me.ningpp.abacus.AbacusParser.UnaryExpressionContext;
 import me.ningpp.abacus.ExpressionDTO;
 import me.ningpp.abacus.ExpressionType;
+import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.tree.ParseTree;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class UnaryTranslator implements Translator {
 
     @Override
-    public ExpressionDTO translate(ParseTree node) {
-        if (! (node instanceof UnaryExpressionContext)) {
-            return null;
-        }
-        UnaryExpressionContext ueCtx = (UnaryExpressionContext) node;
-        int childCount = node.getChildCount();
-        ExpressionDTO dto = new ExpressionDTO();
-        dto.setType(ExpressionType.UNARY);
-        dto.setText(node.getText());
-        List<ExpressionDTO> children = new ArrayList<>(childCount);
-        dto.setChildren(children);
-        for (int i = 0; i < childCount; i++) {
-            children.add(TranslatorUtil.translate(ueCtx.children.get(i)));
-        }
-        return dto;
+    public ExpressionDTO translate(ParseTree node, SourceText source) {
+        return source.span((ParserRuleContext) node, ExpressionType.UNARY);
     }
+
 }
@@ -15,19 +15,23 @@
  */
 package me.ningpp.abacus.translator;
 
-import me.ningpp.abacus.AbacusParser.VariableContext;
 import me.ningpp.abacus.ExpressionDTO;
 import me.ningpp.abacus.ExpressionType;
+import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.tree.ParseTree;
 
+import java.util.List;
+
 public class VariableTranslator implements Translator {
 
     @Override
-    public ExpressionDTO translate(ParseTree node) {
-        if (! (node instanceof VariableContext)) {
-            return null;
-        }
-        return new ExpressionDTO(node.getText(), ExpressionType.VARIABLE);
+    public ExpressionDTO translate(ParseTree node, SourceText source) {
+        return source.span((ParserRuleContext) node, ExpressionType.VARIABLE);
+    }
+
+    @Override
+    public List<ParseTree> children(ParseTree node) {
+        return List.of();
     }
 
 }
@@ -0,0 +1,88 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+import me.ningpp.abacus.exception.MethodNotFoundException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BytecodeCompilerTest {
+
+    private static void assertSameAsInterpreter(String expression, Map<String, Object> context,
+            int defaultScale, RoundingMode defaultRoundingMode, MathContext mathContext) {
+        CompiledExpression compiled = AbacusUtil.compile(expression, defaultScale, defaultRoundingMode, mathContext);
+        ExpressionExecutor executor = BytecodeCompiler.compile(compiled);
+        assertEquals(compiled.calculate(context), executor.execute(compiled.bindVariables(context)));
+    }
+
+    @Test
+    void hugeExpressionTest() {
+        StringBuilder chain = new StringBuilder("$1");
+        StringBuilder args = new StringBuilder("max($1");
+        for (int i = 0; i < 20000; i++) {
+            int v = i % 30 + 1;
+            chain.append(i % 4 == 0 ? " + " : i % 4 == 1 ? " * " : i % 4 == 2 ? " - " : " / ").append('$').append(v);
+            args.append(", $").append(v).append(" * ").append(i);
+        }
+        args.append(')');
+        String nested = "$1";
+        for (int i = 0; i < 300; i++) {
+            nested = "($" + (i % 30 + 1) + " > " + (i % 40) + " ? " + nested + " * 1.01 : $" + (i % 7 + 1) + " - " + i + ")";
+        }
+        Map<String, Object> context = TierFixtures.context(30);
+        assertSameAsInterpreter(chain.toString(), context, 10, RoundingMode.HALF_UP, null);
+        assertSameAsInterpreter(args.toString(), context, 10, RoundingMode.HALF_UP, null);
+        assertSameAsInterpreter(nested, context, 10, RoundingMode.HALF_UP, MathContext.DECIMAL64);
+    }
+
+    @Test
+    void lazyAndExceptionTest() {
+        Map<String, Object> context = TierFixtures.context(4);
+        CompiledExpression compiled = AbacusUtil.compile("$1 > $2 ? $3 / 0 : $1 < $2 || $4 / 0 > 1", 10, RoundingMode.HALF_UP);
+        assertEquals(true, BytecodeCompiler.compile(compiled).execute(compiled.bindVariables(context)));
+
+        CompiledExpression divideByZero = AbacusUtil.compile("$1 < $2 ? $3 / ($1 - $1) : $4", 10, RoundingMode.HALF_UP);
+        assertThrows(ArithmeticException.class,
+                () -> BytecodeCompiler.compile(divideByZero).execute(divideByZero.bindVariables(context)));
+
+        CompiledExpression unknownMethod = AbacusUtil.compile("$1 < $2 ? $3 : unknownMethod($1, $2)", 10, RoundingMode.HALF_UP);
+        ExpressionExecutor executor = BytecodeCompiler.compile(unknownMethod);
+        assertEquals(context.get("$3"), executor.execute(unknownMethod.bindVariables(context)));
+        assertThrows(MethodNotFoundException.class,
+                () -> executor.execute(unknownMethod.bindVariables(Map.of("$1", BigDecimal.TEN, "$2", BigDecimal.ONE))));
+
+        CompiledExpression nullVariable = AbacusUtil.compile("$1 + $5", 10, RoundingMode.HALF_UP);
+        IllegalArgumentException expected = assertThrows(IllegalArgumentException.class,
+                () -> nullVariable.calculate(context));
+        IllegalArgumentException actual = assertThrows(IllegalArgumentException.class,
+                () -> BytecodeCompiler.compile(nullVariable).execute(nullVariable.bindVariables(context)));
+        assertEquals(expected.getMessage(), actual.getMessage());
+    }
+
+    @Test
+    void emptyExpressionTest() {
+        CompiledExpression compiled = AbacusUtil.compileCollapse(null, 10, RoundingMode.HALF_UP, null);
+        assertEquals(null, BytecodeCompiler.compile(compiled).execute(new Object[0]));
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+import me.ningpp.abacus.exception.MethodNotFoundException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ClosureCompilerTest {
+
+    @Test
+    void scaledDecimalTest() {
+        String[] expressions = {
+            "$1 * $1 * $1 + $2 - $2",
+            "$1 / 7 + $2 / 3 - $3 / 9",
+            "-$3 / 2 + $2 * 10 / 4",
+            "$1 * 0.00 + $2 / 8 == $3 / 8",
+            "$1 / 3 > $2 / 3 || $3 * 1.0 == $3",
+            "$1 * $2 * $3 * $1 * $2 * $3 / 13 < $3 - 0.5",
+            "$1 + 1 < 2 ? $2 / 0 : $3 * $2",
+        };
+        Object[][] values = {
+            {new BigDecimal("99999999999"), new BigDecimal("0.1"), new BigDecimal("-5")},
+            {new BigDecimal("9223372036854775807"), new BigDecimal("-1.25"), 7},
+            {new BigDecimal("1E+3"), 2.5, new BigDecimal("-12345678901234567890.5")},
+        };
+        for (String expression : expressions) {
+            for (Object[] value : values) {
+                Map<String, Object> context = Map.of("$1", value[0], "$2", value[1], "$3", value[2]);
+                for (RoundingMode roundingMode : RoundingMode.values()) {
+                    CompiledExpression compiled = AbacusUtil.compile(expression, 2, roundingMode);
+                    Object[] variables = compiled.bindVariables(context);
+                    ExpressionExecutor executor = ClosureCompiler.compile(compiled);
+                    Object expected;
+                    try {
+                        expected = compiled.evaluate(variables);
+                    } catch (ArithmeticException e) {
+                        assertEquals(e.getMessage(),
+                                assertThrows(ArithmeticException.class, () -> executor.execute(variables)).getMessage());
+                        continue;
+                    }
+                    assertEquals(expected, executor.execute(variables));
+                }
+            }
+        }
+    }
+
+    @Test
+    void lazyAndExceptionTest() {
+        Map<String, Object> context = TierFixtures.context(4);
+        CompiledExpression compiled = AbacusUtil.compile("$1 > $2 ? $3 / 0 : $1 < $2 || $4 / 0 > 1", 10, RoundingMode.HALF_UP);
+        assertEquals(true, ClosureCompiler.compile(compiled).execute(compiled.bindVariables(context)));
+
+        CompiledExpression unknownMethod = AbacusUtil.compile("$1 < $2 ? $3 : unknownMethod($1, $2)", 10, RoundingMode.HALF_UP);
+        ExpressionExecutor executor = ClosureCompiler.compile(unknownMethod);
+        assertEquals(context.get("$3"), executor.execute(unknownMethod.bindVariables(context)));
+        assertThrows(MethodNotFoundException.class,
+                () -> executor.execute(unknownMethod.bindVariables(Map.of("$1", BigDecimal.TEN, "$2", BigDecimal.ONE))));
+
+        CompiledExpression nullVariable = AbacusUtil.compile("$1 + $5", 10, RoundingMode.HALF_UP);
+        IllegalArgumentException expected = assertThrows(IllegalArgumentException.class,
+                () -> nullVariable.calculate(context));
+        IllegalArgumentException actual = assertThrows(IllegalArgumentException.class,
+                () -> ClosureCompiler.compile(nullVariable).execute(nullVariable.bindVariables(context)));
+        assertEquals(expected.getMessage(), actual.getMessage());
+    }
+
+}
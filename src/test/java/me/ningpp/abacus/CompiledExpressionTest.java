@@ -0,0 +1,376 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+import me.ningpp.abacus.calculator.ArithmeticCalculator;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompiledExpressionTest {
+
+    private static final String EXPRESSION = " $1 + $2 < $1 * $2 ? $3 / $4 : ( $1 + $2 != $1 * $2 && $3 - $1 == $2 ? max($4, $3) / $3 : min($4, $1) * $3 ) ";
+
+    private static Map<String, Object> context(int i, int j) {
+        Map<String, Object> context = new LinkedHashMap<>();
+        context.put("$1", BigDecimal.valueOf(i));
+        context.put("$2", BigDecimal.valueOf(j));
+        context.put("$3", BigDecimal.valueOf(3));
+        context.put("$4", BigDecimal.valueOf(7));
+        return context;
+    }
+
+    @Test
+    void calculateConcurrentlyTest() throws Exception {
+        int size = 5;
+        Object[][] expected = new Object[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                expected[i][j] = AbacusUtil.calculate(AbacusUtil.parse(EXPRESSION), context(i, j), 10, RoundingMode.HALF_UP);
+            }
+        }
+
+        CompiledExpression compiled = AbacusUtil.compile(EXPRESSION, 10, RoundingMode.HALF_UP);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int n = 0; n < 2000; n++) {
+                        int i = n % size;
+                        int j = (n / size) % size;
+                        assertEquals(expected[i][j], compiled.calculate(context(i, j)));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void calculateKeepsParsedTreeUntouchedTest() {
+        ExpressionResultDTO resultDto = AbacusUtil.parse(EXPRESSION);
+        CompiledExpression compiled = AbacusUtil.compile(resultDto, 10, RoundingMode.HALF_UP);
+        assertEquals(new BigDecimal("2.3333333333"), compiled.calculate(context(1, 2)));
+        assertEquals(new BigDecimal("0.4285714286"), compiled.calculate(context(3, 4)));
+        assertNoCalculatedValue(resultDto.getExpressions());
+
+        @SuppressWarnings("deprecation")
+        Object value = AbacusUtil.calculateOne(CollapseUtil.collapse(resultDto.getExpressions()).get(0), context(1, 2),
+                10, RoundingMode.HALF_UP, null);
+        assertEquals(new BigDecimal("2.3333333333"), value);
+    }
+
+    private static void assertNoCalculatedValue(List<ExpressionDTO> exps) {
+        if (exps == null) {
+            return;
+        }
+        for (ExpressionDTO exp : exps) {
+            if (exp.getType() != ExpressionType.NUMBER) {
+                assertNull(exp.getCalculatedValue());
+            }
+            assertNoCalculatedValue(exp.getChildren());
+        }
+    }
+
+    @Test
+    void shortCircuitTest() {
+        Map<String, Object> context = context(1, 2);
+        assertEquals(new BigDecimal("7"), calculate("$1 > $2 ? min($3, $4 / 0) : $4", context));
+        assertEquals(new BigDecimal("3"), calculate("$1 < $2 ? $3 : max($3 / 0, $4)", context));
+        assertEquals(false, calculate("$1 > $2 && $3 / 0 > $4", context));
+        assertEquals(true, calculate("$1 < $2 || $3 / 0 > $4", context));
+        assertEquals(true, calculate("$1 < $2 && ($3 < $4 || $unknown > 0)", context));
+        assertThrows(ArithmeticException.class, () -> calculate("$3 / 0 > $4 && $1 > $2", context));
+        assertThrows(ArithmeticException.class, () -> calculate("$1 < $2 ? $3 / 0 : $4", context));
+    }
+
+    @Test
+    void visitCountTest() {
+        CompiledExpression compiled = AbacusUtil.compile("$1 + $2 * $3", 10, RoundingMode.HALF_UP);
+        CalculateFrame frame = compiled.calculateFrame(context(1, 2));
+        assertEquals(new BigDecimal("7"), frame.getResult());
+        assertEquals(5, frame.getVisitCount());
+
+        compiled = AbacusUtil.compile("$1 < $2 ? $3 : max($3, $4) * min($3, $4)", 10, RoundingMode.HALF_UP);
+        assertEquals(5, compiled.calculateFrame(context(1, 2)).getVisitCount());
+        // $3 and $4 are shared by max and min
+        assertEquals(9, compiled.calculateFrame(context(2, 1)).getVisitCount());
+    }
+
+    @Test
+    void commonSubexpressionTest() {
+        String expression = "$1 * $2 / $3 + min($1 * $2 / $3, $4) - max($1 * $2 / $3, $4) * ($1 * $2 / $3)";
+        CompiledExpression compiled = AbacusUtil.compile(expression, 10, RoundingMode.HALF_UP);
+        // 10 calculated nodes: the sum, $1 * $2 / $3, min, max, max * (...), (...), $1, $2, $3, $4
+        // 6 symbols: + - * / min max
+        assertEquals(16, compiled.getNodeCount());
+        CalculateFrame frame = compiled.calculateFrame(context(5, 6));
+        assertEquals(AbacusUtil.calculate(AbacusUtil.parse(expression), context(5, 6), 10, RoundingMode.HALF_UP),
+                frame.getResult());
+        assertEquals(10, frame.getVisitCount());
+
+        for (int scale = 0; scale < 6; scale++) {
+            assertEquals(AbacusUtil.calculate(AbacusUtil.parse(expression), context(5, 6), scale, RoundingMode.DOWN),
+                    AbacusUtil.compile(expression, scale, RoundingMode.DOWN).calculate(context(5, 6)));
+        }
+    }
+
+    @Test
+    void visitCountOfDeepExpressionTest() {
+        String expression = "$1";
+        for (int i = 0; i < 40; i++) {
+            expression = "((" + expression + (i % 2 == 0 ? " + 1) * 1)" : " - 1) / 1)");
+        }
+        CompiledExpression compiled = AbacusUtil.compile(expression + " < $2 == ($3 < $4)", 10, RoundingMode.HALF_UP);
+        CalculateFrame frame = compiled.calculateFrame(context(1, 2));
+        assertEquals(true, frame.getResult());
+        assertTrue(frame.getVisitCount() <= compiled.getNodeCount());
+        assertEquals(frame.getVisitCount(), compiled.calculateFrame(context(1, 2)).getVisitCount());
+    }
+
+    @Test
+    void evaluateVariableSlotsTest() {
+        CompiledExpression compiled = AbacusUtil.compile(EXPRESSION, 10, RoundingMode.HALF_UP);
+        assertEquals(List.of("$1", "$2", "$3", "$4"), compiled.getVariableNames());
+        assertEquals(2, compiled.getVariableSlot("$3"));
+        assertEquals(-1, compiled.getVariableSlot("$5"));
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 5; j++) {
+                Map<String, Object> context = context(i, j);
+                Object[] variables = compiled.bindVariables(context);
+                assertEquals(compiled.calculate(context), compiled.evaluate(variables));
+            }
+        }
+        assertEquals(new BigDecimal("2.3333333333"), compiled.evaluate(new Object[] {
+                BigDecimal.ONE, BigDecimal.valueOf(2), BigDecimal.valueOf(3), BigDecimal.valueOf(7)}));
+        assertThrows(IllegalArgumentException.class, () -> compiled.evaluate(new Object[3]));
+    }
+
+    private static Object calculate(String expression, Map<String, Object> context) {
+        return AbacusUtil.compile(expression, 10, RoundingMode.HALF_UP).calculate(context);
+    }
+
+    @Test
+    void emptyExpressionTest() {
+        assertNull(AbacusUtil.compileCollapse(List.of(), 10, RoundingMode.HALF_UP, null).calculate(Map.of()));
+    }
+
+    @Test
+    void tierPromotionTest() {
+        CompiledExpression compiled = AbacusUtil.compile(EXPRESSION, 10, RoundingMode.HALF_UP, null,
+                new TierPolicy(2, 4, Runnable::run));
+        Object expected = AbacusUtil.calculate(AbacusUtil.parse(EXPRESSION), context(1, 2), 10, RoundingMode.HALF_UP);
+        ExecutionTier[] tiers = {ExecutionTier.INTERPRETER, ExecutionTier.CLOSURE, ExecutionTier.CLOSURE,
+                ExecutionTier.BYTECODE, ExecutionTier.BYTECODE};
+        for (ExecutionTier tier : tiers) {
+            assertEquals(expected, compiled.calculate(context(1, 2)));
+            assertEquals(tier, compiled.getTier());
+        }
+        assertEquals(4, compiled.getInvocationCount());
+        assertEquals(expected, compiled.evaluate(compiled.bindVariables(context(1, 2))));
+        assertEquals(expected, compiled.calculateFrame(context(1, 2)).getResult());
+    }
+
+    @Test
+    void backgroundTierPromotionTest() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompiledExpression compiled = AbacusUtil.compile(EXPRESSION, 10, RoundingMode.HALF_UP, null,
+                    new TierPolicy(1, 3, executor));
+            Object expected = AbacusUtil.calculate(AbacusUtil.parse(EXPRESSION), context(2, 1), 10, RoundingMode.HALF_UP);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (compiled.getTier() != ExecutionTier.BYTECODE) {
+                assertTrue(System.nanoTime() < deadline);
+                assertEquals(expected, compiled.calculate(context(2, 1)));
+            }
+            assertEquals(expected, compiled.calculate(context(2, 1)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void noTierPromotionTest() {
+        CompiledExpression interpreted = AbacusUtil.compile(EXPRESSION, 10, RoundingMode.HALF_UP, null,
+                TierPolicy.INTERPRETER_ONLY);
+        CompiledExpression rejected = AbacusUtil.compile(EXPRESSION, 10, RoundingMode.HALF_UP, null,
+                new TierPolicy(0, 0, task -> {
+                    throw new RejectedExecutionException();
+                }));
+        for (int n = 0; n < 10; n++) {
+            assertEquals(interpreted.calculate(context(n, 2)), rejected.calculate(context(n, 2)));
+        }
+        assertEquals(ExecutionTier.INTERPRETER, interpreted.getTier());
+        assertEquals(ExecutionTier.INTERPRETER, rejected.getTier());
+        assertEquals(0, interpreted.getInvocationCount());
+        assertEquals(1, rejected.getInvocationCount());
+        assertThrows(IllegalArgumentException.class, () -> new TierPolicy(-1, 0, Runnable::run));
+    }
+
+    @Test
+    void deepTierPromotionTest() {
+        int depth = CompiledExpression.MAX_PROMOTED_DEPTH;
+        String[] expressions = {"-".repeat(depth / 2) + "$1",
+            "max(".repeat(depth / 2) + "$1" + ", 2)".repeat(depth / 2),
+            "-".repeat(1500) + "$1", "max(".repeat(1500) + "$1" + ", 2)".repeat(1500),
+            "($1 * ".repeat(depth) + "1" + ")".repeat(depth)};
+        ExecutionTier[] tiers = {ExecutionTier.BYTECODE, ExecutionTier.BYTECODE,
+            ExecutionTier.INTERPRETER, ExecutionTier.INTERPRETER, ExecutionTier.INTERPRETER};
+        Map<String, Object> context = Map.of("$1", BigDecimal.ONE);
+        for (int i = 0; i < expressions.length; i++) {
+            CompiledExpression interpreted = AbacusUtil.compile(expressions[i], 10, RoundingMode.HALF_UP, null,
+                    TierPolicy.INTERPRETER_ONLY);
+            CompiledExpression promoted = AbacusUtil.compile(expressions[i], 10, RoundingMode.HALF_UP, null,
+                    new TierPolicy(1, 2, Runnable::run));
+            Object expected = interpreted.calculate(context);
+            for (int n = 0; n < 4; n++) {
+                assertEquals(expected, promoted.calculate(context), expressions[i]);
+            }
+            assertEquals(tiers[i], promoted.getTier(), expressions[i]);
+        }
+    }
+
+    @Test
+    void intermediatePolicyTest() {
+        String expression = "$1 * $2 * $3 + $1 / 7 * 0.5";
+        Map<String, Object> context = Map.of("$1", new BigDecimal("1.2345"),
+                "$2", new BigDecimal("6.7891"), "$3", new BigDecimal("2.4680"));
+        BigDecimal product = new BigDecimal("1.2345").multiply(new BigDecimal("6.7891")).multiply(new BigDecimal("2.4680"));
+        BigDecimal quotient = new BigDecimal("1.2345").divide(BigDecimal.valueOf(7), 10, RoundingMode.HALF_UP)
+                .multiply(new BigDecimal("0.5"));
+
+        CompiledExpression exact = AbacusUtil.compile(expression, 10, RoundingMode.HALF_UP, null,
+                TierPolicy.INTERPRETER_ONLY, IntermediatePolicy.EXACT);
+        assertEquals(AbacusUtil.calculate(AbacusUtil.parse(expression), context, 10, RoundingMode.HALF_UP),
+                exact.calculate(context));
+        assertEquals(product.add(quotient), exact.calculate(context));
+
+        IntermediatePolicy maxScale = IntermediatePolicy.maxScale(4, RoundingMode.HALF_EVEN);
+        BigDecimal scaled = product.setScale(4, RoundingMode.HALF_EVEN).add(quotient.setScale(4, RoundingMode.HALF_EVEN));
+        IntermediatePolicy maxPrecision = IntermediatePolicy.maxPrecision(new MathContext(6, RoundingMode.DOWN));
+        MathContext six = new MathContext(6, RoundingMode.DOWN);
+        BigDecimal rounded = product.round(six).add(quotient.round(six)).round(six);
+        for (IntermediatePolicy policy : new IntermediatePolicy[] {maxScale, maxPrecision}) {
+            BigDecimal expected = policy == maxScale ? scaled : rounded;
+            CompiledExpression compiled = AbacusUtil.compile(expression, 10, RoundingMode.HALF_UP, null,
+                    TierPolicy.INTERPRETER_ONLY, policy);
+            Object[] variables = compiled.bindVariables(context);
+            assertEquals(expected, compiled.evaluate(variables));
+            assertEquals(expected, ClosureCompiler.compile(compiled).execute(variables));
+            assertEquals(expected, BytecodeCompiler.compile(compiled).execute(variables));
+            assertEquals(expected, AbacusUtil.calculate(AbacusUtil.parse(expression), context,
+                    10, RoundingMode.HALF_UP, null, policy));
+        }
+
+        // folded at compile time, rounded the same way
+        assertEquals(new BigDecimal("2.46"), AbacusUtil.compile("1.23456789 * 2", 10, RoundingMode.HALF_UP, null,
+                TierPolicy.INTERPRETER_ONLY, IntermediatePolicy.maxScale(2, RoundingMode.DOWN)).calculate(Map.of()));
+        assertThrows(IllegalArgumentException.class, () -> IntermediatePolicy.maxPrecision(MathContext.UNLIMITED));
+    }
+
+    @Test
+    void chainAccumulatorTest() {
+        StringBuilder expression = new StringBuilder("$1");
+        Map<String, Object> context = new LinkedHashMap<>();
+        context.put("$1", new BigDecimal("0.5"));
+        BigDecimal sum = new BigDecimal("0.5");
+        BigDecimal product = new BigDecimal("0.5");
+        for (int i = 2; i <= 31; i++) {
+            // crosses the long range halfway, and mixes scales and operand types
+            Object value = i % 3 == 0 ? (Object) (i * 100_000_000_000_000_000L / 3)
+                    : i % 3 == 1 ? new BigDecimal(i + ".25") : (Object) i;
+            BigDecimal decimal = new BigDecimal(value.toString());
+            context.put("$" + i, value);
+            expression.append(i % 2 == 0 ? " + $" : " - $").append(i);
+            sum = i % 2 == 0 ? sum.add(decimal) : sum.subtract(decimal);
+            product = product.multiply(decimal);
+        }
+        CompiledExpression additive = AbacusUtil.compile(expression.toString(), 10, RoundingMode.HALF_UP, null,
+                TierPolicy.INTERPRETER_ONLY);
+        assertEquals(sum, additive.calculate(context));
+        CompiledExpression multiplicative = AbacusUtil.compile(expression.toString().replaceAll("[+-]", "*"),
+                10, RoundingMode.HALF_UP, null, TierPolicy.INTERPRETER_ONLY);
+        assertEquals(product, multiplicative.calculate(context));
+
+        // nested chains borrow their own accumulators
+        CompiledExpression nested = AbacusUtil.compile("$1 * ($2 + $3 * ($4 - $5) / 3) - $6",
+                2, RoundingMode.DOWN, null, TierPolicy.INTERPRETER_ONLY);
+        BigDecimal inner = new BigDecimal("3").multiply(new BigDecimal("4.25").subtract(new BigDecimal(5)))
+                .divide(BigDecimal.valueOf(3), 2, RoundingMode.DOWN);
+        assertEquals(new BigDecimal("0.5").multiply(new BigDecimal(2).add(inner)).subtract(new BigDecimal(6)),
+                nested.calculate(Map.of("$1", new BigDecimal("0.5"), "$2", 2, "$3", 3L,
+                        "$4", new BigDecimal("4.25"), "$5", 5, "$6", 6)));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> nested.calculate(Map.of("$1", 1, "$2", 2, "$3", 3, "$4", 4, "$6", 6)));
+        assertEquals("'right' value can't be null!", e.getMessage());
+    }
+
+    @Test
+    void conversionCacheTest() {
+        String expression = "$1 * $2 + $1 - $2 / 4 + max($1, $2, $3) - min($1, 2, $3) * -$3";
+        CompiledExpression compiled = AbacusUtil.compile(expression, 4, RoundingMode.HALF_UP, null,
+                TierPolicy.INTERPRETER_ONLY);
+        Object[] variables = compiled.bindVariables(Map.of("$1", 3, "$2", 0.25, "$3", 7L));
+        CalculateFrame frame = compiled.evaluateFrame(variables);
+        assertEquals(new BigDecimal("24.6875"), frame.getResult());
+        // once per variable, however often they are used
+        assertEquals(3, frame.getConversionCount());
+        assertEquals(frame.getResult(), ClosureCompiler.compile(compiled).execute(variables));
+
+        // only arithmetic sees the converted values
+        CompiledExpression equality = AbacusUtil.compile("$1 == $2 || $1 + 0 == $2 + 0", 4, RoundingMode.HALF_UP, null,
+                TierPolicy.INTERPRETER_ONLY);
+        CalculateFrame equalityFrame = equality.evaluateFrame(equality.bindVariables(Map.of("$1", 3, "$2", 3L)));
+        assertEquals(true, equalityFrame.getResult());
+        assertEquals(false, equality.calculate(Map.of("$1", 3, "$2", 4L)));
+        assertEquals(2, equalityFrame.getConversionCount());
+
+        // values the cache can't convert fail where they are used, as before
+        CompiledExpression nan = AbacusUtil.compile("$1 + 1", 4, RoundingMode.HALF_UP, null,
+                TierPolicy.INTERPRETER_ONLY);
+        assertEquals(assertThrows(NumberFormatException.class, () -> new BigDecimal("NaN")).getMessage(),
+                assertThrows(NumberFormatException.class, () -> nan.calculate(Map.of("$1", Double.NaN))).getMessage());
+        assertEquals(new BigDecimal("1.5"), nan.calculate(Map.of("$1", "0.5")));
+
+        for (Number number : new Number[] {-0.0, 1e-7, 123456789.125, 0.1f, Long.MIN_VALUE, (short) -7, (byte) 9,
+                new BigInteger("123456789012345678901234567890")}) {
+            assertEquals(new BigDecimal(number.toString()), ArithmeticCalculator.toDecimal(number));
+        }
+    }
+
+}
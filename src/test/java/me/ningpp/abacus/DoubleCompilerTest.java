@@ -0,0 +1,107 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+import me.ningpp.abacus.exception.MethodNotFoundException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DoubleCompilerTest {
+
+    private static CompiledExpression compile(String expression, NumericMode numericMode) {
+        return AbacusUtil.compile(expression, 10, RoundingMode.HALF_UP, null, numericMode);
+    }
+
+    @Test
+    void booleanAndObjectTest() {
+        Map<String, Object> context = TierFixtures.context(4);
+        assertEquals(true, compile("$1 >= $2 || $3 <= $4 && ($1 > 2) == ($2 < 1)", NumericMode.DOUBLE).calculate(context));
+        assertEquals("$3", compile("stringContainsAny(\"abc\", \"b\") ? \"$3\" : $2", NumericMode.DOUBLE)
+                .calculate(context));
+        // a branch that isn't a number is returned as it is
+        assertEquals(context.get("$2"), compile("$1 > $2 ? $1 + 1 : $2", NumericMode.DOUBLE).calculate(context));
+        assertEquals(new BigDecimal("0.30000000000000004"), compile("0.1 + $1", NumericMode.DOUBLE)
+                .calculate(Map.of("$1", 0.2)));
+    }
+
+    @Test
+    void divergenceTest() {
+        // numbers are equal by value, not by scale
+        assertEquals(false, compile("$1 == 1.00", NumericMode.DECIMAL).calculate(Map.of("$1", new BigDecimal("1.0"))));
+        assertEquals(true, compile("$1 * 1 == 1.00", NumericMode.DOUBLE).calculate(Map.of("$1", new BigDecimal("1.0"))));
+        assertEquals(true, compile("$1 == 1.00", NumericMode.DOUBLE).calculate(Map.of("$1", 1)));
+        assertEquals(false, compile("$1 + 0 == $2", NumericMode.DOUBLE).calculate(Map.of("$1", 1, "$2", "1")));
+        // a comparison with a number converts the other side
+        assertThrows(ClassCastException.class,
+                () -> compile("$1 > 1", NumericMode.DECIMAL).calculate(Map.of("$1", 2)));
+        assertEquals(true, compile("$1 > 1", NumericMode.DOUBLE).calculate(Map.of("$1", 2)));
+    }
+
+    @Test
+    void sharedSubtreeTest() {
+        String expression = "($1 > $2 ? 1.5 : 2) * ($1 > $2 ? 1.5 : 2) + ($1 > $2 ? $3 : $4) / ($1 > $2 ? $3 : $4)"
+                + " + ($1 > $2 == ($1 > $2) ? 1 : 0)";
+        CompiledExpression decimal = compile(expression, NumericMode.DECIMAL);
+        CompiledExpression compiled = compile(expression, NumericMode.DOUBLE);
+        for (int i = 0; i < 2; i++) {
+            int[] comparisons = new int[1];
+            Map<String, Object> context = Map.of("$1", new Counted(i, comparisons), "$2", new Counted(0, comparisons),
+                    "$3", 3, "$4", new BigDecimal("4.5"));
+            assertEquals(((BigDecimal) decimal.calculate(context)).doubleValue(),
+                    ((BigDecimal) compiled.calculate(context)).doubleValue());
+            // $1 > $2 is compared once per call, however often it is used
+            assertEquals(2, comparisons[0]);
+        }
+    }
+
+    private record Counted(int value, int[] comparisons) implements Comparable<Counted> {
+        @Override
+        public int compareTo(Counted other) {
+            comparisons[0]++;
+            return Integer.compare(value, other.value);
+        }
+    }
+
+    @Test
+    void exceptionTest() {
+        Map<String, Object> context = TierFixtures.context(4);
+        CompiledExpression lazy = compile("$1 > $2 ? $3 / 0 : $1 < $2 || $4 / 0 > 1", NumericMode.DOUBLE);
+        assertEquals(true, lazy.calculate(context));
+        ArithmeticException divide = assertThrows(ArithmeticException.class,
+                () -> compile("$1 / ($2 - $2)", NumericMode.DOUBLE).calculate(context));
+        assertEquals("Division by zero", divide.getMessage());
+        assertThrows(ArithmeticException.class,
+                () -> compile("$1 * $1 * $1", NumericMode.DOUBLE).calculate(Map.of("$1", 1e200)));
+        assertThrows(MethodNotFoundException.class,
+                () -> compile("unknownMethod($1) + 1", NumericMode.DOUBLE).calculate(context));
+
+        CompiledExpression nullVariable = compile("$1 + $5", NumericMode.DOUBLE);
+        IllegalArgumentException expected = assertThrows(IllegalArgumentException.class,
+                () -> compile("$1 + $5", NumericMode.DECIMAL).calculate(context));
+        IllegalArgumentException actual = assertThrows(IllegalArgumentException.class,
+                () -> nullVariable.calculate(context));
+        assertEquals(expected.getMessage(), actual.getMessage());
+        assertTrue(nullVariable.getTier() == ExecutionTier.CLOSURE);
+    }
+
+}
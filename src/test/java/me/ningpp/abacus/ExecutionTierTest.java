@@ -0,0 +1,82 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Every backend against the interpreter on the expressions of {@link TierFixtures}.
+ */
+class ExecutionTierTest {
+
+    private static final Map<ExecutionTier, Function<CompiledExpression, ExpressionExecutor>> BACKENDS = Map.of(
+            ExecutionTier.CLOSURE, ClosureCompiler::compile,
+            ExecutionTier.BYTECODE, BytecodeCompiler::compile);
+
+    @Test
+    void sameResultTest() {
+        Map<String, Object> context = TierFixtures.context(4);
+        for (String expression : TierFixtures.EXPRESSIONS) {
+            for (int scale : new int[] {10, 3}) {
+                for (RoundingMode roundingMode : new RoundingMode[] {RoundingMode.HALF_UP, RoundingMode.DOWN}) {
+                    for (MathContext mathContext : new MathContext[] {null, MathContext.DECIMAL32}) {
+                        CompiledExpression compiled = AbacusUtil.compile(expression, scale, roundingMode, mathContext,
+                                TierPolicy.INTERPRETER_ONLY);
+                        Object[] variables = compiled.bindVariables(context);
+                        Object expected = compiled.evaluate(variables);
+                        for (Map.Entry<ExecutionTier, Function<CompiledExpression, ExpressionExecutor>> backend
+                                : BACKENDS.entrySet()) {
+                            assertEquals(expected, backend.getValue().apply(compiled).execute(variables),
+                                    backend.getKey() + " " + expression);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void doubleCloseToDecimalTest() {
+        Map<String, Object> context = TierFixtures.context(4);
+        for (String expression : TierFixtures.EXPRESSIONS) {
+            if (expression.contains("==")) {
+                // inexact doubles can be unequal where the decimals are equal, see NumericMode
+                continue;
+            }
+            Object expected = AbacusUtil.compile(expression, 10, RoundingMode.HALF_UP, null, NumericMode.DECIMAL)
+                    .calculate(context);
+            Object actual = AbacusUtil.compile(expression, 10, RoundingMode.HALF_UP, null, NumericMode.DOUBLE)
+                    .calculate(context);
+            if (expected instanceof BigDecimal decimal) {
+                // the decimal mode divides with scale 10
+                double value = decimal.doubleValue();
+                assertEquals(value, ((BigDecimal) actual).doubleValue(), 1e-9 * Math.max(1, Math.abs(value)),
+                        expression);
+            } else {
+                assertEquals(expected, actual, expression);
+            }
+        }
+    }
+
+}
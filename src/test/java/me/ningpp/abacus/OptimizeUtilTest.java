@@ -0,0 +1,110 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+import me.ningpp.abacus.exception.MethodNotFoundException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OptimizeUtilTest {
+
+    private static ExpressionDTO optimize(String expression, int defaultScale, RoundingMode defaultRoundingMode,
+            MathContext mathContext) {
+        List<ExpressionDTO> collapsed = CollapseUtil.collapse(AbacusUtil.parse(expression).getExpressions());
+        List<ExpressionDTO> optimized = OptimizeUtil.optimize(collapsed, defaultScale, defaultRoundingMode, mathContext);
+        assertEquals(1, optimized.size());
+        return optimized.get(0);
+    }
+
+    @Test
+    void foldConstantTest() {
+        ExpressionDTO exp = optimize("2 * 3 / 7 + 1", 10, RoundingMode.HALF_UP, null);
+        assertEquals(ExpressionType.CONSTANT, exp.getType());
+        assertEquals(new BigDecimal("1.8571428571"), exp.getCalculatedValue());
+
+        exp = optimize("2 * 3 / 7 + 1", 3, RoundingMode.DOWN, null);
+        assertEquals(new BigDecimal("1.857"), exp.getCalculatedValue());
+
+        exp = optimize("2 * 3 / 7 + 1", 3, RoundingMode.DOWN, MathContext.DECIMAL32);
+        assertEquals(new BigDecimal("1.857143"), exp.getCalculatedValue());
+
+        exp = optimize("max(1, 2.5, min(3, 4)) > 2 && stringContainsAny(\"abc\", \"x\", \"c\")", 10, RoundingMode.HALF_UP, null);
+        assertEquals(ExpressionType.CONSTANT, exp.getType());
+        assertEquals(true, exp.getCalculatedValue());
+    }
+
+    @Test
+    void foldConstantSubtreeTest() {
+        ExpressionDTO exp = optimize("$1 + (6 / 4) * $2", 10, RoundingMode.HALF_UP, null);
+        assertEquals(ExpressionType.ADDITIVE, exp.getType());
+        ExpressionDTO multiplicative = exp.getChildren().get(2);
+        assertEquals(ExpressionType.CONSTANT, multiplicative.getChildren().get(0).getType());
+        assertEquals(new BigDecimal("1.5000000000"), multiplicative.getChildren().get(0).getCalculatedValue());
+    }
+
+    @Test
+    void pruneDeadBranchTest() {
+        ExpressionDTO exp = optimize("( 1 < 7 || stringContainsAny($1, \"3\") ) ? $1 : $2 / 0", 10, RoundingMode.HALF_UP, null);
+        assertEquals(ExpressionType.VARIABLE, exp.getType());
+        assertEquals("$1", exp.getText());
+
+        exp = optimize("( 6 != 6 ) && $1 > 0 ? $1 : ( 4 > 7 ) ? $2 : $3", 10, RoundingMode.HALF_UP, null);
+        assertEquals(ExpressionType.VARIABLE, exp.getType());
+        assertEquals("$3", exp.getText());
+    }
+
+    @Test
+    void keepFailingConstantTest() {
+        CompiledExpression compiled = AbacusUtil.compile("$1 > 0 ? 1 / 0 : 2", 10, RoundingMode.HALF_UP);
+        assertEquals(new BigDecimal("2"), compiled.calculate(Map.of("$1", BigDecimal.ONE.negate())));
+        assertThrows(ArithmeticException.class, () -> compiled.calculate(Map.of("$1", BigDecimal.ONE)));
+
+        CompiledExpression unknownMethod = AbacusUtil.compile("unknownMethod(1, 2)", 10, RoundingMode.HALF_UP);
+        assertThrows(MethodNotFoundException.class, () -> unknownMethod.calculate(Map.of()));
+    }
+
+    @Test
+    void sameResultTest() {
+        String expression = "($1 - 2 / 3) * (1 < 2 ? max(1 / 7, $1 / 9) : min(3, 5)) / (2 * 6 / 9)";
+        Map<String, Object> context = Map.of("$1", new BigDecimal("1.37"));
+        for (int scale = 0; scale < 12; scale++) {
+            for (RoundingMode roundingMode : List.of(RoundingMode.HALF_UP, RoundingMode.DOWN, RoundingMode.CEILING)) {
+                ExpressionResultDTO resultDto = AbacusUtil.parse(expression);
+                assertEquals(AbacusUtil.calculate(resultDto, context, scale, roundingMode),
+                        AbacusUtil.compile(resultDto, scale, roundingMode).calculate(context));
+            }
+        }
+        ExpressionResultDTO resultDto = AbacusUtil.parse(expression);
+        assertEquals(AbacusUtil.calculate(resultDto, context, 10, RoundingMode.HALF_UP, MathContext.DECIMAL64),
+                AbacusUtil.compile(resultDto, 10, RoundingMode.HALF_UP, MathContext.DECIMAL64).calculate(context));
+    }
+
+    @Test
+    void leafTest() {
+        ExpressionDTO exp = optimize("$1", 10, RoundingMode.HALF_UP, null);
+        assertSame(exp, OptimizeUtil.optimize(exp, 10, RoundingMode.HALF_UP, null));
+    }
+
+}
@@ -0,0 +1,300 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+import me.ningpp.abacus.exception.SyntaxException;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParseTest {
+
+    @Test
+    void syntaxErrorMessageTest() {
+        assertSyntaxError("line 1:3 at [@2,3:2='<EOF>',<-1>,1:3]: no viable alternative at input '1+'", "1 +");
+        assertSyntaxError("line 1:6 at [@4,6:5='<EOF>',<-1>,1:6]: no viable alternative at input 'max(1,'", "max(1,");
+        assertSyntaxError("line 1:5 at [@3,5:4='<EOF>',<-1>,1:5]: mismatched input '<EOF>' expecting "
+                + "{'+', '-', '*', '/', '&&', '||', '>', '<', '==', '!=', '<=', '>=', ':'}", "1 ? 2");
+        assertSyntaxError("line 1:0 at [@0,0:-1='<EOF>',<-1>,1:0]: mismatched input '<EOF>' expecting "
+                + "{'(', '+', '-', '*', '/', VARIABLE, SCIENTIFIC_NUMBER, StringLiteral}", "");
+    }
+
+    private static void assertSyntaxError(String message, String expression) {
+        assertEquals(message, assertThrows(SyntaxException.class, () -> AbacusUtil.parse(expression)).getMessage());
+    }
+
+    @Test
+    void parseInvocationTest() {
+        assertEquals(new BigDecimal("5"), calculate("max(1, 2) + 3"));
+        assertEquals(new BigDecimal("2"), calculate("max(1, 2)"));
+        assertEquals(new BigDecimal("8"), calculate("1 < 2 ? max(1, 2) * 4 : min(3, 4)"));
+    }
+
+    private static Object calculate(String expression) {
+        return AbacusUtil.calculate(AbacusUtil.parse(expression), Map.of(), 10, RoundingMode.HALF_UP);
+    }
+
+    @Test
+    void parseBuildsCollapsedTreeTest() {
+        List<String> expressions = List.of("1", "(1)", "((($1)))", "-(-1)", "+-*/1", "1 + 2 * 3 - 4 / 5",
+                "((1 + 2)) * (3)", "max()", "max(1, (2), min(3, 4 * $1))", "\"abc\"", "(\"abc\")",
+                "1 < 2 && 3 >= 4 || 5 == 6 && 7 != 8", "1 < 2 ? 3 : 4 > 5 ? (6) : max(7, 8)",
+                "1 /* comment */ + 2 // line", "3B + 1.5B", "stringContainsAny(\"abc\", \"b\") ? 1 : 2");
+        for (String expression : expressions) {
+            ExpressionResultDTO parsed = AbacusUtil.parse(expression);
+            assertTrue(parsed.isCollapsed());
+            List<ExpressionDTO> reference = CollapseUtil.collapse(visit(expression).getExpressions());
+            assertEquals(dump(reference), dump(parsed.getExpressions()), expression);
+            assertEquals(dump(reference), dump(CollapseUtil.collapse(parsed.getExpressions())), expression);
+        }
+    }
+
+    @Test
+    void warmupTest() {
+        WarmupReport report = AbacusUtil.warmup();
+        assertTrue(report.getExpressions() > 0);
+        assertTrue(report.getSyntaxErrors() > 0);
+        assertTrue(report.getParserDfaStates() > 0);
+        assertTrue(report.getLexerDfaStates() > 0);
+        assertTrue(report.getParserDfaStatesBuilt() >= 0);
+        assertTrue(!report.getDuration().isNegative());
+
+        report = AbacusUtil.warmup(List.of("1 + $a * 2", "1 +"));
+        assertEquals(2, report.getExpressions());
+        assertEquals(1, report.getSyntaxErrors());
+        // nothing new to learn after the coverage set
+        assertEquals(0, report.getParserDfaStatesBuilt());
+        assertThrows(IllegalArgumentException.class, () -> AbacusUtil.warmup(null));
+    }
+
+    @Test
+    void parseAllTest() {
+        // valid, invalid and lenient (ANTLR ignores the rest) inputs, one after the other on the same parsers
+        List<String> templates = List.of("1 + $%d * 2", "max(%d,", "%d 2", "(%d", "$a > %d ? 1 : 2", "%d +", "%d . 1");
+        List<String> expressions = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            expressions.add(String.format(templates.get(i % templates.size()), i));
+        }
+        List<ParseOutcome> outcomes = AbacusUtil.parseAll(expressions);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            assertEquals(outcomes.size(), AbacusUtil.parseAll(expressions, pool).size());
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(expressions.size(), outcomes.size());
+        for (int i = 0; i < expressions.size(); i++) {
+            String expression = expressions.get(i);
+            ParseOutcome outcome = outcomes.get(i);
+            assertEquals(expression, outcome.getExpression());
+            try {
+                ExpressionResultDTO expected = AbacusUtil.parse(expression);
+                assertTrue(outcome.isSuccess(), expression);
+                assertEquals(dump(expected.getExpressions()), dump(outcome.getResult().getExpressions()), expression);
+            } catch (SyntaxException e) {
+                assertTrue(!outcome.isSuccess(), expression);
+                assertEquals(e.getMessage(), outcome.getError().getMessage(), expression);
+            }
+        }
+        assertEquals(List.of(), AbacusUtil.parseAll(List.of()));
+    }
+
+    @Test
+    void tryParseTest() {
+        ParseOutcome success = AbacusUtil.tryParse("max(1, 2) + @3");
+        assertTrue(success.isSuccess());
+        assertEquals(List.of(), success.getErrors());
+        assertEquals(null, success.getError());
+        assertEquals(dump(AbacusUtil.parse("max(1, 2) + @3").getExpressions()),
+                dump(success.getResult().getExpressions()));
+
+        for (String invalid : List.of("1 +", "max(1,", "(1 + 2", "1 <\n < 2")) {
+            SyntaxException thrown = assertThrows(SyntaxException.class, () -> AbacusUtil.parse(invalid));
+            ParseOutcome failure = AbacusUtil.tryParse(invalid);
+            assertFalse(failure.isSuccess());
+            assertEquals(null, failure.getResult());
+            assertEquals(thrown.getMessage(), failure.getErrors().get(0).getMessage());
+            assertEquals(thrown.getMessage(), failure.getError().getMessage());
+        }
+        SyntaxError error = AbacusUtil.tryParse("1 <\n < 2").getErrors().get(0);
+        assertEquals(2, error.getLine());
+        assertEquals(1, error.getCharPositionInLine());
+        assertEquals("<", error.getOffendingText());
+        // the parser recovers from a stray token and finds the next error too
+        List<SyntaxError> errors = AbacusUtil.tryParse(") 1 * 2 + * ) 3").getErrors();
+        assertEquals(2, errors.size());
+        assertEquals(0, errors.get(0).getCharPositionInLine());
+        assertEquals(12, errors.get(1).getCharPositionInLine());
+
+        try {
+            AbacusUtil.setStacklessSyntaxExceptions(true);
+            assertEquals(0, assertThrows(SyntaxException.class, () -> AbacusUtil.parse("1 +")).getStackTrace().length);
+        } finally {
+            AbacusUtil.setStacklessSyntaxExceptions(false);
+        }
+        assertTrue(assertThrows(SyntaxException.class, () -> AbacusUtil.parse("1 +")).getStackTrace().length > 0);
+    }
+
+    @Test
+    void validateAndReferencedNamesTest() {
+        String expression = "max($b, $a) > 1 ? stringContainsAny(\"$c\", $a) : now() + /* $d */ -($b * 中文)";
+        AbacusUtil.validate(expression);
+        assertEquals(List.of("$b", "$a", "中文"), new ArrayList<>(AbacusUtil.referencedVariables(expression)));
+        assertEquals(List.of("max", "stringContainsAny", "now"), new ArrayList<>(AbacusUtil.referencedMethods(expression)));
+        // the hand-written parser gives up on characters the lexer skips, the tree is searched then
+        assertEquals(List.of("$a", "$b"), new ArrayList<>(AbacusUtil.referencedVariables("max(@$a, $b) + $a")));
+        assertEquals(List.of("max"), new ArrayList<>(AbacusUtil.referencedMethods("max(@$a, $b) + $a")));
+        assertEquals(Set.of(), AbacusUtil.referencedMethods("1 + 2"));
+
+        for (String invalid : List.of("1 +", "max(1,", "1 ? 2", "(1", "1 < < 2")) {
+            String message = assertThrows(SyntaxException.class, () -> AbacusUtil.parse(invalid)).getMessage();
+            assertEquals(message, assertThrows(SyntaxException.class, () -> AbacusUtil.validate(invalid)).getMessage());
+            assertEquals(message, assertThrows(SyntaxException.class,
+                    () -> AbacusUtil.referencedVariables(invalid)).getMessage());
+        }
+    }
+
+    @Test
+    void parseCharactersAndBytesTest() {
+        for (String expression : List.of("max($a, \"x\") + 1.5B * (2 - $b)", "中文 + \"\uD83D\uDE00\" /* é */", "1 2")) {
+            String expected = dump(AbacusUtil.parse(expression).getExpressions());
+            assertEquals(expected, dump(AbacusUtil.parse(new StringBuilder(expression)).getExpressions()));
+            char[] chars = ("##" + expression + "##").toCharArray();
+            assertEquals(expected, dump(AbacusUtil.parse(chars, 2, expression.length()).getExpressions()));
+            byte[] utf8 = ("##" + expression).getBytes(StandardCharsets.UTF_8);
+            ByteBuffer heap = ByteBuffer.wrap(utf8).position(2);
+            assertEquals(expected, dump(AbacusUtil.parse(heap).getExpressions()));
+            assertEquals(2, heap.position());
+            ByteBuffer direct = ByteBuffer.allocateDirect(utf8.length).put(utf8).flip().position(2);
+            assertEquals(expected, dump(AbacusUtil.parse(direct).getExpressions()));
+        }
+        // ASCII bytes are read where they are
+        ExpressionDTO exp = AbacusUtil.parse(ByteBuffer.wrap("$a + 1".getBytes(StandardCharsets.US_ASCII)))
+                .getExpressions().get(0);
+        assertTrue(exp.getSource() instanceof AsciiCharSequence);
+        assertEquals("$a", exp.getChildren().get(0).getText());
+
+        String message = assertThrows(SyntaxException.class, () -> AbacusUtil.parse("max(1,")).getMessage();
+        assertEquals(message, assertThrows(SyntaxException.class,
+                () -> AbacusUtil.parse(new StringBuilder("max(1,"))).getMessage());
+        assertEquals(message, assertThrows(SyntaxException.class,
+                () -> AbacusUtil.parse(ByteBuffer.wrap("max(1,".getBytes(StandardCharsets.UTF_8)))).getMessage());
+    }
+
+    @Test
+    void sourceSpanTest() {
+        String expression = "max(\"\uD83D\uDE00\", (1 + 2B)) * $1 /* comment */";
+        ExpressionDTO root = AbacusUtil.parse(expression).getExpressions().get(0);
+        assertEquals(ExpressionType.MULTIPLICATIVE, root.getType());
+        assertEquals("max(\"\uD83D\uDE00\", (1 + 2B)) * $1", root.getText());
+        ExpressionDTO invocation = root.getChildren().get(0);
+        // every node refers to the one source string
+        assertSame(expression, root.getSource());
+        assertSame(expression, invocation.getSource());
+        assertEquals("max(\"\uD83D\uDE00\", (1 + 2B))", invocation.getText());
+        assertEquals("max", invocation.getChildren().get(0).getText());
+        assertEquals("\uD83D\uDE00", invocation.getChildren().get(1).getText());
+        ExpressionDTO parenthesis = invocation.getChildren().get(2);
+        assertEquals("(1 + 2B)", parenthesis.getText());
+        assertEquals("2", parenthesis.getChildren().get(0).getChildren().get(2).getText());
+        assertEquals("$1", root.getChildren().get(2).getText());
+    }
+
+    @Test
+    void collapseDeepTreeTest() {
+        // 1 + (1 + (1 + ... )), every level wrapped in pass-through nodes, far deeper than the thread stack allows recursively
+        int depth = 100_000;
+        ExpressionDTO exp = new ExpressionDTO("1", ExpressionType.NUMBER);
+        for (int i = 0; i < depth; i++) {
+            ExpressionDTO parenthesis = new ExpressionDTO("(" + i + ")", ExpressionType.PARENTHESIS,
+                    List.of(new ExpressionDTO("", ExpressionType.PRIMARY, List.of(exp))));
+            ExpressionDTO additive = new ExpressionDTO("1+" + i, ExpressionType.ADDITIVE,
+                    List.of(new ExpressionDTO("1", ExpressionType.NUMBER), new ExpressionDTO("+", ExpressionType.SYMBOL), parenthesis));
+            exp = new ExpressionDTO("", ExpressionType.EXPRESSION, List.of(additive));
+        }
+        ExpressionDTO collapsed = CollapseUtil.collapse(exp, null);
+        for (int i = 1; i < depth; i++) {
+            assertEquals(ExpressionType.ADDITIVE, collapsed.getType());
+            ExpressionDTO parenthesis = collapsed.getChildren().get(2);
+            assertEquals(ExpressionType.PARENTHESIS, parenthesis.getType());
+            collapsed = parenthesis.getChildren().get(0);
+        }
+        // the innermost (1) collapses to the number itself
+        assertEquals(ExpressionType.NUMBER, collapsed.getChildren().get(2).getType());
+    }
+
+    @Test
+    void deeplyNestedFormulaTest() {
+        // thousands of nested parentheses around every operand, parsed and calculated end to end
+        int depth = 5_000;
+        String expression = nest("$1 + 1", depth) + " * " + nest("-" + nest("$2", depth), depth)
+                + " - max(" + nest("$1", depth) + ", " + nest("2 / $2", depth) + ")";
+        Map<String, Object> context = Map.of("$1", new BigDecimal("1.5"), "$2", 4);
+        ExpressionResultDTO parsed = AbacusUtil.parse(expression);
+        assertEquals(new BigDecimal("-11.5"), AbacusUtil.calculate(parsed, context, 2, RoundingMode.HALF_UP));
+        assertEquals(new BigDecimal("-11.5"),
+                AbacusUtil.compile(expression, 2, RoundingMode.HALF_UP).calculate(context));
+        AbacusUtil.validate(expression);
+        assertEquals(Set.of("$1", "$2"), AbacusUtil.referencedVariables(expression));
+
+        // the reference parser, for input the hand-written one gives up on, reports what it can't nest
+        String trailing = nest("1 + 2", depth) + " 3";
+        SyntaxException e = assertThrows(SyntaxException.class, () -> AbacusUtil.parse(trailing));
+        assertTrue(e.getMessage().endsWith("expression is nested too deeply"), e.getMessage());
+        assertThrows(SyntaxException.class, () -> AbacusUtil.validate(trailing));
+        assertFalse(AbacusUtil.tryParse(trailing).isSuccess());
+    }
+
+    private static String nest(String expression, int depth) {
+        return "(".repeat(depth) + expression + ")".repeat(depth);
+    }
+
+    // the parse tree and translator path
+    private static ExpressionResultDTO visit(String expression) {
+        AbacusParser parser = new AbacusParser(new CommonTokenStream(new AbacusLexer(CharStreams.fromString(expression))));
+        return new AbacusDefaultVisitor().visit(parser.expression());
+    }
+
+    private static String dump(List<ExpressionDTO> exps) {
+        StringBuilder builder = new StringBuilder();
+        for (ExpressionDTO exp : exps) {
+            builder.append('{').append(exp.getType()).append('|').append(exp.getText()).append('|')
+                    .append(exp.getCalculatedValue());
+            if (exp.getChildren() != null) {
+                builder.append(dump(exp.getChildren()));
+            }
+            builder.append('}');
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,208 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+import me.ningpp.abacus.parser.PrattParser;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Token;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The hand-written parser against the ANTLR parser, trees and errors must be the same.
+ */
+class PrattParserTest {
+
+    private static final String[] BINARY_OPERATORS = {"+", "-", "*", "/", "&&", "||", "==", "!=", "<", ">", "<=", ">="};
+
+    private static final String[] UNARY_OPERATORS = {"+", "-", "*", "/"};
+
+    private static final String[] VARIABLES = {"$1", "$2", "a", "_b9", "中文", "µ", "ǅx", "$"};
+
+    private static final String[] STRINGS = {"\"\"", "\"abc\"", "\"a\\\"b\"", "\"\\\\\"", "\"\\n\\t\\'\"", "\"\\123\\7\"",
+        "\"\\uuu00e9\"", "\"\uD83D\uDE00\"", "\"/* not a comment */\""};
+
+    private static final String[] BLANKS = {"", "", "", " ", "  ", "\t", "\r\n", "\f", "/* c */", "/**/", "// line\n"};
+
+    @Test
+    void sameTreesAndErrorsTest() {
+        List<String> expressions = new ArrayList<>(List.of("1", "1.5", "3B", "1.5B", "0.0", "(1)", "((($1)))", "-(-1)",
+                "+-*/1", "1 + 2 * 3 - 4 / 5", "1 * 2 + 3 * 4 + 5", "1 < 2 < 3", "1 == 2 != 3 == 4",
+                "1 && 2 && 3 || 4 || 5", "1 ? 2 : 3 ? 4 : 5", "1 ? 2 ? 3 : 4 : 5", "1 + 2 ? 3 : 4 || 5",
+                "max()", "max(1)", "max(1, (2), min(3, 4 * $1))", "max ( 1 ) ( 2 )", "(max())", "((max(1)))",
+                "(\"abc\")", "1 /* comment */ + 2 // line", "stringContainsAny(\"abc\", \"b\") ? 1 : 2",
+                // what ANTLR reports, skips or ignores
+                "", " ", "/*", "1 +", "(1", "1)", "max(", "max(1,", "1 ? 2", "1 ? 2 :", "a b", "1 2", "\"abc", "\"a\nb\"",
+                "\"\\q\"", "\"\\u12\"", "$1 && ", "1 *** 2", "1 = 2", "1 & 2", "1 | 2", "!1", "a.b", ".5", "5.", "1e5",
+                "@", "1 + @", "max(1,2)(3)", "(max)(1)", "1 ? : 2", "[1]", "1 % 2", "𝒳 + 1", "1 /* 2"));
+        Random random = new Random(20241018L);
+        for (int i = 0; i < 2000; i++) {
+            String expression = randomExpression(random, random.nextInt(6));
+            expressions.add(expression);
+            expressions.add(mutate(expression, random));
+        }
+        int fast = 0;
+        for (String expression : expressions) {
+            String reference = outcome(() -> AbacusUtil.parseWithAntlr(expression).getExpressions());
+            ExpressionDTO parsed = PrattParser.parse(expression);
+            if (parsed != null) {
+                assertEquals(reference, dump(List.of(parsed)), expression);
+                fast++;
+            }
+            assertEquals(reference, outcome(() -> AbacusUtil.parse(expression).getExpressions()), expression);
+        }
+        // the valid random expressions at least
+        assertTrue(fast > 2000, String.valueOf(fast));
+    }
+
+    @Test
+    void identifierCharsTest() {
+        for (char c = 0; c < Character.MAX_VALUE; c++) {
+            if (Character.isSurrogate(c) || c == '"') {
+                continue;
+            }
+            String start = String.valueOf(c);
+            String part = "a" + c;
+            assertEquals(isVariable(start), isFastVariable(start), Integer.toHexString(c));
+            assertEquals(isVariable(part), isFastVariable(part), Integer.toHexString(c));
+        }
+    }
+
+    private static boolean isVariable(String text) {
+        AbacusLexer lexer = new AbacusLexer(CharStreams.fromString(text));
+        lexer.removeErrorListeners();
+        Token token = lexer.nextToken();
+        return token.getType() == AbacusLexer.VARIABLE && token.getText().equals(text);
+    }
+
+    private static boolean isFastVariable(String text) {
+        ExpressionDTO parsed = PrattParser.parse(text);
+        return parsed != null && parsed.getType() == ExpressionType.VARIABLE && parsed.getText().equals(text);
+    }
+
+    @Test
+    void deepNestingTest() {
+        // far deeper than the ANTLR parser gets with the default thread stack, nesting is not parsed recursively
+        int depth = 10_000;
+        String expression = "(".repeat(depth) + "1 + $1" + ")".repeat(depth);
+        ExpressionDTO parsed = PrattParser.parse(expression);
+        assertNotNull(parsed);
+        assertEquals(ExpressionType.PARENTHESIS, parsed.getType());
+        assertEquals("(1 + $1)", parsed.getText());
+        assertEquals(new BigDecimal("3"), AbacusUtil.calculate(AbacusUtil.parse(expression),
+                Map.of("$1", BigDecimal.valueOf(2)), 2, RoundingMode.HALF_UP));
+        AbacusUtil.validate(expression);
+        assertEquals(Set.of("$1"), AbacusUtil.referencedVariables(expression));
+
+        ExpressionDTO unary = PrattParser.parse("-".repeat(depth) + "$1");
+        ExpressionDTO invocation = PrattParser.parse("max(".repeat(depth) + "$1" + ", 2)".repeat(depth));
+        ExpressionDTO sum = PrattParser.parse("($1 + ".repeat(depth) + "1" + ")".repeat(depth));
+        for (int i = 0; i < depth; i++) {
+            assertEquals(ExpressionType.ARITHMETIC, unary.getType());
+            unary = unary.getChildren().get(1);
+            assertEquals(ExpressionType.METHOD_INVOCATION, invocation.getType());
+            assertEquals("2", invocation.getChildren().get(2).getText());
+            invocation = invocation.getChildren().get(1);
+            assertEquals(ExpressionType.PARENTHESIS, sum.getType());
+            sum = sum.getChildren().get(0).getChildren().get(2);
+        }
+        assertEquals("$1", unary.getText());
+        assertEquals("$1", invocation.getText());
+        assertEquals("1", sum.getText());
+        assertTrue(PrattParser.recognize("max(".repeat(depth) + "$1 ? (-$2) : 3" + ", 2)".repeat(depth), null, null));
+        // an unclosed parenthesis deep down is still given up on
+        assertNull(PrattParser.parse("(".repeat(depth) + "1" + ")".repeat(depth - 1)));
+        assertFalse(PrattParser.recognize("(".repeat(depth) + "1" + ")".repeat(depth - 1), null, null));
+    }
+
+    private static String randomExpression(Random random, int depth) {
+        int pick = depth <= 0 ? random.nextInt(4) : random.nextInt(10);
+        String blank = BLANKS[random.nextInt(BLANKS.length)];
+        return switch (pick) {
+            case 0 -> random.nextInt(1000) + (random.nextBoolean() ? "" : "." + random.nextInt(100))
+                    + (random.nextInt(5) == 0 ? "B" : "");
+            case 1 -> VARIABLES[random.nextInt(VARIABLES.length)];
+            case 2 -> STRINGS[random.nextInt(STRINGS.length)];
+            case 3 -> "max" + blank + "()";
+            case 4 -> UNARY_OPERATORS[random.nextInt(UNARY_OPERATORS.length)] + blank + randomExpression(random, depth - 1);
+            case 5, 6 -> randomExpression(random, depth - 1) + blank + BINARY_OPERATORS[random.nextInt(BINARY_OPERATORS.length)]
+                    + blank + randomExpression(random, depth - 1);
+            case 7 -> randomExpression(random, depth - 1) + " ?" + blank + randomExpression(random, depth - 1) + blank + ": "
+                    + randomExpression(random, depth - 1);
+            case 8 -> "(" + blank + randomExpression(random, depth - 1) + blank + ")";
+            default -> {
+                StringBuilder builder = new StringBuilder(random.nextBoolean() ? "max(" : "min" + blank + "(");
+                int arguments = random.nextInt(1, 4);
+                for (int i = 0; i < arguments; i++) {
+                    builder.append(i == 0 ? "" : "," + blank).append(randomExpression(random, depth - 1));
+                }
+                yield builder.append(')').toString();
+            }
+        };
+    }
+
+    private static String mutate(String expression, Random random) {
+        String chars = "()+-*/?:,<>=!&|\" $1a";
+        StringBuilder builder = new StringBuilder(expression);
+        int position = random.nextInt(builder.length() + 1);
+        switch (random.nextInt(3)) {
+            case 0 -> builder.insert(position, chars.charAt(random.nextInt(chars.length())));
+            case 1 -> builder.delete(position, Math.min(position + 1, builder.length()));
+            default -> builder.replace(position, Math.min(position + 1, builder.length()),
+                    String.valueOf(chars.charAt(random.nextInt(chars.length()))));
+        }
+        return builder.toString();
+    }
+
+    private static String outcome(ParseAction action) {
+        try {
+            return dump(action.parse());
+        } catch (RuntimeException e) {
+            return e.getClass().getName() + ": " + e.getMessage();
+        }
+    }
+
+    private interface ParseAction {
+        List<ExpressionDTO> parse();
+    }
+
+    private static String dump(List<ExpressionDTO> exps) {
+        StringBuilder builder = new StringBuilder();
+        for (ExpressionDTO exp : exps) {
+            builder.append('{').append(exp.getType()).append('|').append(exp.getText()).append('|')
+                    .append(exp.getCalculatedValue()).append('|').append(exp.getStart()).append('|').append(exp.getStop());
+            if (exp.getChildren() != null) {
+                builder.append(dump(exp.getChildren()));
+            }
+            builder.append('}');
+        }
+        return builder.toString();
+    }
+
+}
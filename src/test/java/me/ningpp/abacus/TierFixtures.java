@@ -0,0 +1,52 @@
+/*
+ *    Copyright 2024 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package me.ningpp.abacus;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The variables and expressions every backend is checked with, see {@link ExecutionTierTest}.
+ */
+final class TierFixtures {
+
+    static final List<String> EXPRESSIONS = List.of(
+            "$1 + $2 < $1 * $2 ? $3 / $4 : "
+                    + "( $1 + $2 != $1 * $2 && $3 - $1 == $2 ? max($4, $3) / $3 : min($4, $1) * $3 )",
+            "$1 + $2 < $1 * $2 ? $3 / $4 : "
+                    + "( $1 + $2 != $1 * $2 && $3 - $1 < $4 ? max($4, $3) / $3 : min($4, $1) * $3 )",
+            "$1 * $2 / $3 + min($1 * $2 / $3, $4) - max($1 * $2 / $3, $4) * ($1 * $2 / $3)",
+            "-$1 * +$2 / -(3 - $3) + *$4 - /$1",
+            "$1 >= $2 || $3 <= $4 && ($1 > 2) == ($2 < 1)",
+            "stringContainsAny(\"abc\", $1, \"b\") ? $1 : $2",
+            "$1 / 3 * 0.5 + 1.25 - $2 / 7",
+            "$1 / 3 * 0.5 + 1.25 - $2 / 7 * $3 * $3 * $3 * $4");
+
+    private TierFixtures() {
+    }
+
+    // $1 = 1.1, $2 = 2.2, ...
+    static Map<String, Object> context(int size) {
+        Map<String, Object> context = new LinkedHashMap<>();
+        for (int i = 1; i <= size; i++) {
+            context.put("$" + i, new BigDecimal(i + "." + i));
+        }
+        return context;
+    }
+
+}